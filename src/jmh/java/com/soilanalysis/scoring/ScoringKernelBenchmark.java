@@ -0,0 +1,100 @@
+package com.soilanalysis.scoring;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The hand-written scores the kernel replaced (kept in ScoreProfileTest)
+ * against ScoringKernel, per sample and over whole columns. "bulk" uses the
+ * SIMD scorer when the JVM has jdk.incubator.vector, "scalarBulk" never does.
+ * Run with: mvn -B -Pbenchmark test-compile exec:exec@jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringKernelBenchmark {
+    @Param({"10000"})
+    int rows;
+
+    // Row-major, as the old code saw one sample at a time
+    double[][] samples;
+    // Column-major, as scoreAll takes them
+    double[][] columns;
+    double[] out;
+
+    @Setup
+    public void createSamples() {
+        Random random = new Random(16);
+        samples = new double[rows][ScoreProfile.INPUT_COUNT];
+        columns = new double[ScoreProfile.INPUT_COUNT][rows];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < ScoreProfile.INPUT_COUNT; j++) {
+                double v = j == ScoreProfile.Input.PH.ordinal() ? 4.0 + random.nextDouble() * 5.0 : random.nextDouble() * 80.0;
+                samples[i][j] = v;
+                columns[j][i] = v;
+            }
+        }
+        out = new double[rows];
+    }
+
+    @Benchmark
+    public void soilHealthOld(Blackhole blackhole) {
+        for (double[] sample : samples) {
+            blackhole.consume(ScoreProfileTest.oldHealthScore(sample));
+        }
+    }
+
+    @Benchmark
+    public void soilHealthScore(Blackhole blackhole) {
+        for (double[] sample : samples) {
+            blackhole.consume(ScoringKernel.score(ScoreProfile.SOIL_HEALTH, sample));
+        }
+    }
+
+    @Benchmark
+    public double[] soilHealthScalarBulk() {
+        ScoringKernel.scalarScoreAll(ScoreProfile.SOIL_HEALTH, columns, rows, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] soilHealthBulk() {
+        ScoringKernel.scoreAll(ScoreProfile.SOIL_HEALTH, columns, rows, out);
+        return out;
+    }
+
+    @Benchmark
+    public void dashboardTrendOld(Blackhole blackhole) {
+        for (double[] sample : samples) {
+            blackhole.consume(ScoreProfileTest.oldDashboardScore(sample));
+        }
+    }
+
+    @Benchmark
+    public double[] dashboardTrendScalarBulk() {
+        ScoringKernel.scalarScoreAll(ScoreProfile.DASHBOARD_TREND, columns, rows, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] dashboardTrendBulk() {
+        ScoringKernel.scoreAll(ScoreProfile.DASHBOARD_TREND, columns, rows, out);
+        return out;
+    }
+}
@@ -1,14 +1,22 @@
 package com.soilanalysis;
 
+import com.soilanalysis.model.MultiSeasonAnalysis;
 import com.soilanalysis.model.SoilData;
 import com.soilanalysis.model.SoilAnalysis;
+import com.soilanalysis.service.BatchIngestPipeline;
 import com.soilanalysis.service.SoilAnalyzerService;
+import com.soilanalysis.service.SoilSampleArchive;
 import com.soilanalysis.service.ReportGeneratorService;
+import java.nio.file.Paths;
 import java.util.Map;
-import java.util.HashMap;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+
         try {
             // Create sample soil data with enhanced parameters
             SoilData soilData = new SoilData();
@@ -50,30 +58,20 @@ public class Main {
             }
             System.out.println("Soil Texture Class: " + soilData.determineSoilTextureClass());
             
-            // Analyze each season separately
-            SoilAnalysis[] seasonalAnalyses = new SoilAnalysis[4];
-            String[] seasons = {"SPRING", "SUMMER", "AUTUMN", "WINTER"};
-            Map<String, String> allSeasonalRecommendations = new HashMap<>();
+            // Analyze all seasons in one pass; the sample itself is left unchanged
+            SoilAnalyzerService analyzerService = new SoilAnalyzerService();
             
             System.out.println("\nAnalyzing soil suitability for multiple crops across seasons...");
             System.out.println("Crops: " + soilData.getCropType());
             
-            // Analyze each season
-            for (int i = 0; i < seasons.length; i++) {
-                soilData.setSeason(seasons[i]);
-                System.out.println("\nAnalyzing " + seasons[i] + " season...");
-                
-                // Analyze soil for this season
-                SoilAnalyzerService analyzerService = new SoilAnalyzerService();
-                seasonalAnalyses[i] = analyzerService.analyzeSoil(soilData);
-                
-                // Collect seasonal recommendations
-                allSeasonalRecommendations.putAll(seasonalAnalyses[i].getSeasonalRecommendations());
+            MultiSeasonAnalysis seasonalAnalyses = analyzerService.analyzeSeasons(soilData);
+            for (SoilData.Season season : seasonalAnalyses.getSeasons()) {
+                System.out.println("\nAnalyzed " + season + " season");
             }
             
-            // Use the last analysis for the report (they should be similar)
-            SoilAnalysis finalAnalysis = seasonalAnalyses[0];
-            finalAnalysis.setSeasonalRecommendations(allSeasonalRecommendations);
+            // Everything but the seasonal advice is the same in every season
+            SoilAnalysis finalAnalysis = analyzerService.expand(seasonalAnalyses.getAnalysis(SoilData.Season.SPRING));
+            finalAnalysis.setSeasonalRecommendations(seasonalAnalyses.getAllSeasonalRecommendations());
 
             // Generate PDF report
             ReportGeneratorService reportService = new ReportGeneratorService();
@@ -109,4 +107,34 @@ public class Main {
             e.printStackTrace();
         }
     }
-} 
\ No newline at end of file
+
+    // Usage: --batch <input.csv|input.tsv> <output file> [analyzer threads] [sample archive]
+    private static void runBatch(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: --batch <input.csv|input.tsv> <output file> [analyzer threads] [sample archive]");
+            System.exit(2);
+        }
+        try {
+            int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            BatchIngestPipeline pipeline = new BatchIngestPipeline(new SoilAnalyzerService(), workers, 1024);
+
+            System.out.println("Analyzing " + args[1] + " with " + workers + " analyzer threads...");
+            BatchIngestPipeline.Summary summary;
+            if (args.length > 4) {
+                // Keeps the samples' measurements for later historical comparisons
+                try (SoilSampleArchive archive = new SoilSampleArchive(Paths.get(args[4]))) {
+                    summary = pipeline.run(Paths.get(args[1]), Paths.get(args[2]), archive);
+                    System.out.println("Samples archived in " + args[4] + ": " + archive.size() + " in total");
+                }
+            } else {
+                summary = pipeline.run(Paths.get(args[1]), Paths.get(args[2]));
+            }
+            System.out.println("Batch analysis completed: " + summary);
+            System.out.println("Results written to: " + args[2]);
+        } catch (Exception e) {
+            System.err.println("Error during batch analysis: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.soilanalysis.model;
+
+import com.soilanalysis.model.SoilAnalysis.FertilizerRecommendation;
+import com.soilanalysis.model.SoilData.Season;
+
+import java.util.List;
+
+/*
+ * A soil analysis reduced to its health score and bitmasks, for bulk runs
+ * that keep millions of results in memory. Each finding is one bit:
+ * fired analyzer rules in one mask, and improvement areas, micronutrient
+ * recommendations, environmental impacts and the current-season note in
+ * another. SoilAnalyzerService.expand() rebuilds the full SoilAnalysis
+ * from it when one is needed.
+ */
+public final class CompactSoilAnalysis {
+    // Improvement areas, in the order a full analysis lists them
+    public static final int PH_ADJUSTMENT = 1;
+    public static final int LOW_NITROGEN = 1 << 1;
+    public static final int LOW_PHOSPHORUS = 1 << 2;
+    public static final int LOW_POTASSIUM = 1 << 3;
+    public static final int LOW_ORGANIC_MATTER = 1 << 4;
+    public static final int LOW_MOISTURE = 1 << 5;
+    public static final int IMPROVEMENT_AREAS = (1 << 6) - 1;
+
+    // Micronutrient recommendations, listed after the rule recommendations
+    public static final int IRON_CHELATE = 1 << 6;
+    public static final int ZINC_SULFATE = 1 << 7;
+
+    // Environmental impacts
+    public static final int NUTRIENT_RUNOFF = 1 << 8;
+    public static final int SOIL_EROSION = 1 << 9;
+
+    // Current-season notes, at most one is set
+    public static final int COLD_SPRING = 1 << 10;
+    public static final int DRY_SUMMER = 1 << 11;
+
+    private final SoilData soilData;
+    // Season the flags were worked out for, null if none; may differ from the sample's own (see analyzeSeasons)
+    private final Season season;
+    private final double healthScore;
+    // Bit i set when analyzer rule i fired
+    private final long firedRules;
+    // Shared recommendation per analyzer rule, from the rule set the sample was evaluated with
+    private final List<FertilizerRecommendation> ruleRecommendations;
+    private final int flags;
+
+    public CompactSoilAnalysis(SoilData soilData, Season season, double healthScore, long firedRules,
+                               List<FertilizerRecommendation> ruleRecommendations, int flags) {
+        this.soilData = soilData;
+        this.season = season;
+        this.healthScore = healthScore;
+        this.firedRules = firedRules;
+        this.ruleRecommendations = ruleRecommendations;
+        this.flags = flags;
+    }
+
+    public SoilData getSoilData() { return soilData; }
+
+    public Season getSeason() { return season; }
+
+    public double getHealthScore() { return healthScore; }
+
+    public long getFiredRules() { return firedRules; }
+
+    public List<FertilizerRecommendation> getRuleRecommendations() { return ruleRecommendations; }
+
+    public int getFlags() { return flags; }
+
+    public boolean has(int flag) { return (flags & flag) != 0; }
+
+    public int getRecommendationCount() {
+        return Long.bitCount(firedRules) + Integer.bitCount(flags & (IRON_CHELATE | ZINC_SULFATE));
+    }
+
+    public int getImprovementAreaCount() { return Integer.bitCount(flags & IMPROVEMENT_AREAS); }
+}
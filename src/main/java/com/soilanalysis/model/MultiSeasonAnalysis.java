@@ -0,0 +1,45 @@
+package com.soilanalysis.model;
+
+import com.soilanalysis.model.SoilData.Season;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * One sample analyzed for each season, from
+ * SoilAnalyzerService.analyzeSeasons(). The per-season compact results
+ * share everything but their season and current-season flag, and the seasonal
+ * recommendation maps are the analyzer's shared, unmodifiable ones.
+ * Nothing here can be modified; expand a season's compact result for a
+ * SoilAnalysis to work on.
+ */
+public final class MultiSeasonAnalysis {
+    private final Map<Season, CompactSoilAnalysis> seasons;
+    private final Map<Season, Map<String, String>> seasonalRecommendations;
+
+    public MultiSeasonAnalysis(Map<Season, CompactSoilAnalysis> seasons,
+                               Map<Season, Map<String, String>> seasonalRecommendations) {
+        this.seasons = Collections.unmodifiableMap(new EnumMap<>(seasons));
+        this.seasonalRecommendations = Collections.unmodifiableMap(new EnumMap<>(seasonalRecommendations));
+    }
+
+    public Set<Season> getSeasons() { return seasons.keySet(); }
+
+    public CompactSoilAnalysis getAnalysis(Season season) { return seasons.get(season); }
+
+    public Map<String, String> getSeasonalRecommendations(Season season) {
+        return seasonalRecommendations.get(season);
+    }
+
+    // The seasons' recommendations merged in season order; a later CURRENT_SEASON note replaces an earlier one
+    public Map<String, String> getAllSeasonalRecommendations() {
+        Map<String, String> all = new HashMap<>();
+        for (Map<String, String> recommendations : seasonalRecommendations.values()) {
+            all.putAll(recommendations);
+        }
+        return all;
+    }
+}
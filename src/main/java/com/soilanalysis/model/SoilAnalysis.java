@@ -1,6 +1,10 @@
 package com.soilanalysis.model;
 
+import com.soilanalysis.scoring.ScoreProfile;
+import com.soilanalysis.scoring.ScoringKernel;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -14,6 +18,8 @@ public class SoilAnalysis {
     private List<String> improvementAreas;
     private Map<String, Double> nutrientScores;
     private Map<String, String> seasonalRecommendations;
+    // Set while seasonalRecommendations is a map handed in by the caller, which may be shared and read-only
+    private boolean seasonalRecommendationsShared;
     private List<CropSuitability> cropSuitability;
     private List<EnvironmentalImpact> environmentalImpacts;
 
@@ -35,48 +41,122 @@ public class SoilAnalysis {
             LOW
         }
 
+        // Set on shared instances, which many analyses may reference
+        private final boolean shared;
+
         // Constructor
         public FertilizerRecommendation() {
             this.compatibleCrops = new ArrayList<>();
             this.incompatibleCrops = new ArrayList<>();
+            this.shared = false;
+        }
+
+        /*
+         * An immutable recommendation that analyses can share instead of each
+         * holding its own copy of the same constant text. Its setters throw
+         * and its crop lists are empty and unmodifiable; copy() gives an
+         * editable one.
+         */
+        public static FertilizerRecommendation shared(String name, String amount, String frequency,
+                                                      String benefits, String notes, Priority priority) {
+            return new FertilizerRecommendation(name, amount, frequency, benefits, notes, priority);
+        }
+
+        private FertilizerRecommendation(String name, String amount, String frequency,
+                                         String benefits, String notes, Priority priority) {
+            this.name = name;
+            this.amount = amount;
+            this.frequency = frequency;
+            this.benefits = benefits;
+            this.notes = notes;
+            this.priority = priority;
+            this.compatibleCrops = Collections.emptyList();
+            this.incompatibleCrops = Collections.emptyList();
+            this.shared = true;
+        }
+
+        // An editable copy, with its own crop lists
+        public FertilizerRecommendation copy() {
+            FertilizerRecommendation copy = new FertilizerRecommendation();
+            copy.name = name;
+            copy.amount = amount;
+            copy.frequency = frequency;
+            copy.benefits = benefits;
+            copy.notes = notes;
+            copy.priority = priority;
+            copy.applicationMethod = applicationMethod;
+            copy.bestTimeToApply = bestTimeToApply;
+            copy.compatibleCrops.addAll(compatibleCrops);
+            copy.incompatibleCrops.addAll(incompatibleCrops);
+            return copy;
+        }
+
+        public boolean isShared() { return shared; }
+
+        private void checkMutable() {
+            if (shared) {
+                throw new UnsupportedOperationException("Shared recommendation " + name + " is immutable; edit a copy()");
+            }
         }
 
         // Getters and Setters
         public String getName() { return name; }
-        public void setName(String name) { this.name = name; }
+        public void setName(String name) {
+            checkMutable();
+            this.name = name;
+        }
 
         public String getAmount() { return amount; }
-        public void setAmount(String amount) { this.amount = amount; }
+        public void setAmount(String amount) {
+            checkMutable();
+            this.amount = amount;
+        }
 
         public String getFrequency() { return frequency; }
-        public void setFrequency(String frequency) { this.frequency = frequency; }
+        public void setFrequency(String frequency) {
+            checkMutable();
+            this.frequency = frequency;
+        }
 
         public String getBenefits() { return benefits; }
-        public void setBenefits(String benefits) { this.benefits = benefits; }
+        public void setBenefits(String benefits) {
+            checkMutable();
+            this.benefits = benefits;
+        }
 
         public String getNotes() { return notes; }
-        public void setNotes(String notes) { this.notes = notes; }
+        public void setNotes(String notes) {
+            checkMutable();
+            this.notes = notes;
+        }
 
         public Priority getPriority() { return priority; }
-        public void setPriority(Priority priority) { this.priority = priority; }
+        public void setPriority(Priority priority) {
+            checkMutable();
+            this.priority = priority;
+        }
 
         public String getApplicationMethod() { return applicationMethod; }
-        public void setApplicationMethod(String applicationMethod) { 
+        public void setApplicationMethod(String applicationMethod) {
+            checkMutable();
             this.applicationMethod = applicationMethod; 
         }
 
         public String getBestTimeToApply() { return bestTimeToApply; }
-        public void setBestTimeToApply(String bestTimeToApply) { 
+        public void setBestTimeToApply(String bestTimeToApply) {
+            checkMutable();
             this.bestTimeToApply = bestTimeToApply; 
         }
 
         public List<String> getCompatibleCrops() { return compatibleCrops; }
-        public void setCompatibleCrops(List<String> compatibleCrops) { 
+        public void setCompatibleCrops(List<String> compatibleCrops) {
+            checkMutable();
             this.compatibleCrops = compatibleCrops; 
         }
 
         public List<String> getIncompatibleCrops() { return incompatibleCrops; }
-        public void setIncompatibleCrops(List<String> incompatibleCrops) { 
+        public void setIncompatibleCrops(List<String> incompatibleCrops) {
+            checkMutable();
             this.incompatibleCrops = incompatibleCrops; 
         }
     }
@@ -132,41 +212,85 @@ public class SoilAnalysis {
         private List<String> mitigationStrategies;
         private String longTermEffect;
 
+        // Set on shared instances, which many analyses may reference
+        private final boolean shared;
+
         // Constructor
         public EnvironmentalImpact() {
             this.mitigationStrategies = new ArrayList<>();
+            this.shared = false;
+        }
+
+        // An immutable impact for sharing between analyses, like FertilizerRecommendation.shared()
+        public static EnvironmentalImpact shared(String impactType, String description, String severity,
+                                                 List<String> mitigationStrategies, String longTermEffect) {
+            return new EnvironmentalImpact(impactType, description, severity, mitigationStrategies, longTermEffect);
+        }
+
+        private EnvironmentalImpact(String impactType, String description, String severity,
+                                    List<String> mitigationStrategies, String longTermEffect) {
+            this.impactType = impactType;
+            this.description = description;
+            this.severity = severity;
+            this.mitigationStrategies = List.copyOf(mitigationStrategies);
+            this.longTermEffect = longTermEffect;
+            this.shared = true;
+        }
+
+        // An editable copy, with its own strategy list
+        public EnvironmentalImpact copy() {
+            EnvironmentalImpact copy = new EnvironmentalImpact();
+            copy.impactType = impactType;
+            copy.description = description;
+            copy.severity = severity;
+            copy.mitigationStrategies.addAll(mitigationStrategies);
+            copy.longTermEffect = longTermEffect;
+            return copy;
+        }
+
+        public boolean isShared() { return shared; }
+
+        private void checkMutable() {
+            if (shared) {
+                throw new UnsupportedOperationException("Shared impact " + impactType + " is immutable; edit a copy()");
+            }
         }
 
         // Getters and Setters
         public String getImpactType() { return impactType; }
-        public void setImpactType(String impactType) { this.impactType = impactType; }
+        public void setImpactType(String impactType) {
+            checkMutable();
+            this.impactType = impactType;
+        }
 
         public String getDescription() { return description; }
-        public void setDescription(String description) { this.description = description; }
+        public void setDescription(String description) {
+            checkMutable();
+            this.description = description;
+        }
 
         public String getSeverity() { return severity; }
-        public void setSeverity(String severity) { this.severity = severity; }
+        public void setSeverity(String severity) {
+            checkMutable();
+            this.severity = severity;
+        }
 
         public List<String> getMitigationStrategies() { return mitigationStrategies; }
-        public void setMitigationStrategies(List<String> mitigationStrategies) { 
+        public void setMitigationStrategies(List<String> mitigationStrategies) {
+            checkMutable();
             this.mitigationStrategies = mitigationStrategies; 
         }
 
         public String getLongTermEffect() { return longTermEffect; }
-        public void setLongTermEffect(String longTermEffect) { 
+        public void setLongTermEffect(String longTermEffect) {
+            checkMutable();
             this.longTermEffect = longTermEffect; 
         }
     }
 
-    // Constructor
+    // Constructor; the collections are created on first use, so score-only analyses carry none
     public SoilAnalysis() {
         this.id = generateId();
-        this.recommendations = new ArrayList<>();
-        this.improvementAreas = new ArrayList<>();
-        this.nutrientScores = new HashMap<>();
-        this.seasonalRecommendations = new HashMap<>();
-        this.cropSuitability = new ArrayList<>();
-        this.environmentalImpacts = new ArrayList<>();
     }
 
     // Getters and Setters
@@ -179,7 +303,13 @@ public class SoilAnalysis {
     public double getHealthScore() { return healthScore; }
     public void setHealthScore(double healthScore) { this.healthScore = healthScore; }
 
-    public List<FertilizerRecommendation> getRecommendations() { return recommendations; }
+    // Analyzer results may hold shared recommendations (isShared()); replace one with its copy() to edit it
+    public List<FertilizerRecommendation> getRecommendations() {
+        if (recommendations == null) {
+            recommendations = new ArrayList<>();
+        }
+        return recommendations;
+    }
     public void setRecommendations(List<FertilizerRecommendation> recommendations) { 
         this.recommendations = recommendations; 
     }
@@ -189,112 +319,103 @@ public class SoilAnalysis {
         this.overallAssessment = overallAssessment; 
     }
 
-    public List<String> getImprovementAreas() { return improvementAreas; }
+    public List<String> getImprovementAreas() {
+        if (improvementAreas == null) {
+            improvementAreas = new ArrayList<>();
+        }
+        return improvementAreas;
+    }
     public void setImprovementAreas(List<String> improvementAreas) { 
         this.improvementAreas = improvementAreas; 
     }
 
-    public Map<String, Double> getNutrientScores() { return nutrientScores; }
+    public Map<String, Double> getNutrientScores() {
+        if (nutrientScores == null) {
+            nutrientScores = new HashMap<>();
+        }
+        return nutrientScores;
+    }
     public void setNutrientScores(Map<String, Double> nutrientScores) { 
         this.nutrientScores = nutrientScores; 
     }
 
-    public Map<String, String> getSeasonalRecommendations() { return seasonalRecommendations; }
+    public Map<String, String> getSeasonalRecommendations() {
+        if (seasonalRecommendations == null) {
+            seasonalRecommendations = new HashMap<>();
+        }
+        return seasonalRecommendations;
+    }
+    /*
+     * Keeps the given map rather than copying it, so analyses can share the
+     * analyzer's unmodifiable seasonal maps. addSeasonalRecommendation copies
+     * it before its first change.
+     */
     public void setSeasonalRecommendations(Map<String, String> seasonalRecommendations) { 
         this.seasonalRecommendations = seasonalRecommendations; 
+        this.seasonalRecommendationsShared = seasonalRecommendations != null;
     }
 
-    public List<CropSuitability> getCropSuitability() { return cropSuitability; }
+    public List<CropSuitability> getCropSuitability() {
+        if (cropSuitability == null) {
+            cropSuitability = new ArrayList<>();
+        }
+        return cropSuitability;
+    }
     public void setCropSuitability(List<CropSuitability> cropSuitability) { 
         this.cropSuitability = cropSuitability; 
     }
 
-    public List<EnvironmentalImpact> getEnvironmentalImpacts() { return environmentalImpacts; }
+    // As with recommendations, analyzer results may hold shared impacts
+    public List<EnvironmentalImpact> getEnvironmentalImpacts() {
+        if (environmentalImpacts == null) {
+            environmentalImpacts = new ArrayList<>();
+        }
+        return environmentalImpacts;
+    }
     public void setEnvironmentalImpacts(List<EnvironmentalImpact> environmentalImpacts) { 
         this.environmentalImpacts = environmentalImpacts; 
     }
 
     // Helper method to generate unique ID
     private String generateId() {
-        return "ANALYSIS-" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next("ANALYSIS-");
     }
 
     // Helper method to add a recommendation
     public void addRecommendation(FertilizerRecommendation recommendation) {
-        this.recommendations.add(recommendation);
+        getRecommendations().add(recommendation);
     }
 
     // Helper method to add an improvement area
     public void addImprovementArea(String area) {
-        this.improvementAreas.add(area);
+        getImprovementAreas().add(area);
     }
 
     public void addNutrientScore(String nutrient, double score) {
-        this.nutrientScores.put(nutrient, score);
+        getNutrientScores().put(nutrient, score);
     }
 
     public void addSeasonalRecommendation(String season, String recommendation) {
-        this.seasonalRecommendations.put(season, recommendation);
+        if (seasonalRecommendationsShared) {
+            seasonalRecommendations = new HashMap<>(seasonalRecommendations);
+            seasonalRecommendationsShared = false;
+        }
+        getSeasonalRecommendations().put(season, recommendation);
     }
 
     public void addCropSuitability(CropSuitability suitability) {
-        this.cropSuitability.add(suitability);
+        getCropSuitability().add(suitability);
     }
 
     public void addEnvironmentalImpact(EnvironmentalImpact impact) {
-        this.environmentalImpacts.add(impact);
+        getEnvironmentalImpacts().add(impact);
     }
 
     // Helper method to calculate overall health score
     public void calculateHealthScore() {
-        double totalScore = 0.0;
-        int factorCount = 0;
-
-        // Basic nutrient scores
-        if (soilData != null) {
-            // pH score (optimal range: 6.0-7.0)
-            double phScore = calculatePhScore(soilData.getPh());
-            totalScore += phScore;
-            factorCount++;
-
-            // Macronutrient scores
-            totalScore += calculateNutrientScore(soilData.getNitrogen(), 30.0, 50.0);
-            totalScore += calculateNutrientScore(soilData.getPhosphorus(), 20.0, 40.0);
-            totalScore += calculateNutrientScore(soilData.getPotassium(), 40.0, 60.0);
-            factorCount += 3;
-
-            // Organic matter score (optimal range: 2.0-4.0%)
-            double omScore = calculateNutrientScore(soilData.getOrganicMatter(), 2.0, 4.0);
-            totalScore += omScore;
-            factorCount++;
-
-            // Micronutrient scores
-            totalScore += calculateNutrientScore(soilData.getIron(), 4.0, 6.0);
-            totalScore += calculateNutrientScore(soilData.getZinc(), 2.0, 4.0);
-            totalScore += calculateNutrientScore(soilData.getCopper(), 0.8, 1.2);
-            totalScore += calculateNutrientScore(soilData.getManganese(), 3.0, 5.0);
-            factorCount += 4;
-        }
-
-        this.healthScore = factorCount > 0 ? totalScore / factorCount : 0.0;
-    }
-
-    private double calculatePhScore(double ph) {
-        if (ph >= 6.0 && ph <= 7.0) return 10.0;
-        if (ph >= 5.5 && ph < 6.0) return 8.0;
-        if (ph > 7.0 && ph <= 7.5) return 8.0;
-        if (ph >= 5.0 && ph < 5.5) return 6.0;
-        if (ph > 7.5 && ph <= 8.0) return 6.0;
-        return 4.0;
-    }
-
-    private double calculateNutrientScore(double value, double minOptimal, double maxOptimal) {
-        if (value >= minOptimal && value <= maxOptimal) return 10.0;
-        if (value >= minOptimal * 0.8 && value < minOptimal) return 8.0;
-        if (value > maxOptimal && value <= maxOptimal * 1.2) return 8.0;
-        if (value >= minOptimal * 0.6 && value < minOptimal * 0.8) return 6.0;
-        if (value > maxOptimal * 1.2 && value <= maxOptimal * 1.4) return 6.0;
-        return 4.0;
+        this.healthScore = soilData != null
+            ? ScoringKernel.score(ScoreProfile.SOIL_HEALTH, ScoringKernel.sample(soilData, new double[ScoreProfile.INPUT_COUNT]))
+            : 0.0;
     }
 
     @Override
@@ -303,13 +424,13 @@ public class SoilAnalysis {
                 "id='" + id + '\'' +
                 ", soilData=" + soilData +
                 ", healthScore=" + healthScore +
-                ", recommendations=" + recommendations +
+                ", recommendations=" + getRecommendations() +
                 ", overallAssessment='" + overallAssessment + '\'' +
-                ", improvementAreas=" + improvementAreas +
-                ", nutrientScores=" + nutrientScores +
-                ", seasonalRecommendations=" + seasonalRecommendations +
-                ", cropSuitability=" + cropSuitability +
-                ", environmentalImpacts=" + environmentalImpacts +
+                ", improvementAreas=" + getImprovementAreas() +
+                ", nutrientScores=" + getNutrientScores() +
+                ", seasonalRecommendations=" + getSeasonalRecommendations() +
+                ", cropSuitability=" + getCropSuitability() +
+                ", environmentalImpacts=" + getEnvironmentalImpacts() +
                 '}';
     }
 } 
\ No newline at end of file
@@ -47,12 +47,71 @@ public class SoilData {
         WINTER
     }
 
+    // The measured and descriptive values an analysis can depend on
+    public enum Field {
+        PH,
+        NITROGEN,
+        PHOSPHORUS,
+        POTASSIUM,
+        ORGANIC_MATTER,
+        MOISTURE,
+        TEMPERATURE,
+        BULK_DENSITY,
+        CATION_EXCHANGE_CAPACITY,
+        SOIL_TYPE,
+        LOCATION,
+        SAMPLE_DEPTH,
+        CROP_TYPE,
+        SEASON,
+        IRON,
+        ZINC,
+        COPPER,
+        MANGANESE,
+        SAND_PERCENTAGE,
+        SILT_PERCENTAGE,
+        CLAY_PERCENTAGE
+    }
+
     // Constructor
     public SoilData() {
         this.id = generateId();
         this.analysisDate = LocalDateTime.now();
     }
 
+    // Field-for-field copy, id included, as it is the same sample
+    private SoilData(SoilData other) {
+        this.id = other.id;
+        this.analysisDate = other.analysisDate;
+        this.ph = other.ph;
+        this.nitrogen = other.nitrogen;
+        this.phosphorus = other.phosphorus;
+        this.potassium = other.potassium;
+        this.organicMatter = other.organicMatter;
+        this.moisture = other.moisture;
+        this.temperature = other.temperature;
+        this.bulkDensity = other.bulkDensity;
+        this.cationExchangeCapacity = other.cationExchangeCapacity;
+        this.soilType = other.soilType;
+        this.location = other.location;
+        this.sampleDepth = other.sampleDepth;
+        this.cropType = other.cropType;
+        this.season = other.season;
+        this.iron = other.iron;
+        this.zinc = other.zinc;
+        this.copper = other.copper;
+        this.manganese = other.manganese;
+        this.sandPercentage = other.sandPercentage;
+        this.siltPercentage = other.siltPercentage;
+        this.clayPercentage = other.clayPercentage;
+    }
+
+    // This sample as if taken in the given season
+    public SoilData withSeason(String season) {
+        SoilData copy = new SoilData(this);
+        copy.season = season;
+        return copy;
+    }
+
     // Getters and Setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -127,7 +186,7 @@ public class SoilData {
 
     // Helper method to generate unique ID
     private String generateId() {
-        return "SOIL-" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next("SOIL-");
     }
 
     // Helper method to validate soil texture percentages
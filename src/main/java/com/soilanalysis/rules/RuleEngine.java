@@ -0,0 +1,202 @@
+package com.soilanalysis.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilanalysis.model.SoilData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Loads the fertilizer rule sets from JSON and keeps the compiled tables.
+ * The bundled /rules/fertilizer-rules.json is used unless the soil.rules.file
+ * system property names a file; that file is watched and recompiled when it
+ * changes. Callers look a set up per use, so a reload takes effect on the
+ * next evaluation. A file that fails to compile leaves the old rules in place.
+ */
+public final class RuleEngine {
+    public static final String ANALYZER = "analyzer";
+    public static final String DATA_MANAGER = "data-manager";
+    public static final String ENTRY_FORM = "entry-form";
+
+    private static final String BUNDLED_RULES = "/rules/fertilizer-rules.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static volatile Map<String, RuleSet> ruleSets;
+    private static final Path rulesFile;
+
+    static {
+        String file = System.getProperty("soil.rules.file");
+        rulesFile = file != null ? Paths.get(file).toAbsolutePath() : null;
+        try {
+            ruleSets = rulesFile != null ? load(rulesFile) : loadBundled();
+        } catch (IOException | RuntimeException e) {
+            if (rulesFile == null) {
+                throw new ExceptionInInitializerError(e);
+            }
+            // A broken override shouldn't stop the app; fall back to the shipped rules
+            e.printStackTrace();
+            try {
+                ruleSets = loadBundled();
+            } catch (IOException bundled) {
+                throw new ExceptionInInitializerError(bundled);
+            }
+        }
+        if (rulesFile != null) {
+            watch(rulesFile);
+        }
+    }
+
+    private RuleEngine() {
+    }
+
+    public static RuleSet get(String name) {
+        RuleSet set = ruleSets.get(name);
+        if (set == null) {
+            throw new IllegalArgumentException("No rule set named " + name);
+        }
+        return set;
+    }
+
+    public static Map<String, RuleSet> getRuleSets() { return ruleSets; }
+
+    // Recompiles the rules file now; returns false and keeps the current rules if it is invalid
+    public static synchronized boolean reload() {
+        if (rulesFile == null) {
+            return false;
+        }
+        try {
+            ruleSets = load(rulesFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public static Map<String, RuleSet> load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return compile(MAPPER.readTree(in));
+        }
+    }
+
+    private static Map<String, RuleSet> loadBundled() throws IOException {
+        try (InputStream in = RuleEngine.class.getResourceAsStream(BUNDLED_RULES)) {
+            if (in == null) {
+                throw new IOException(BUNDLED_RULES + " not found on the classpath");
+            }
+            return compile(MAPPER.readTree(in));
+        }
+    }
+
+    // Top-level object: rule set name -> array of rules, kept in file order
+    public static Map<String, RuleSet> compile(JsonNode root) {
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("Rules file must be a JSON object of rule sets");
+        }
+        Map<String, RuleSet> compiled = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> sets = root.fields();
+        while (sets.hasNext()) {
+            Map.Entry<String, JsonNode> set = sets.next();
+            compiled.put(set.getKey(), compileSet(set.getKey(), set.getValue()));
+        }
+        return Collections.unmodifiableMap(compiled);
+    }
+
+    private static RuleSet compileSet(String name, JsonNode rules) {
+        if (!rules.isArray()) {
+            throw new IllegalArgumentException("Rule set " + name + " must be an array");
+        }
+        int n = rules.size();
+        int[] inputs = new int[n];
+        byte[] accepts = new byte[n];
+        double[] thresholds = new double[n];
+        RuleSet.Action[] actions = new RuleSet.Action[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode rule = rules.get(i);
+            String where = name + "[" + i + "]";
+            RuleSet.Input input = RuleSet.Input.valueOf(required(rule, "input", where));
+            inputs[i] = input.ordinal();
+            accepts[i] = comparison(required(rule, "op", where), where);
+            JsonNode value = rule.get("value");
+            if (value == null) {
+                throw new IllegalArgumentException(where + " has no value");
+            }
+            thresholds[i] = input == RuleSet.Input.SOIL_TYPE
+                ? SoilData.SoilType.valueOf(value.asText()).ordinal()
+                : value.asDouble();
+            actions[i] = new RuleSet.Action(text(rule, "text"), text(rule, "name"), text(rule, "amount"),
+                text(rule, "frequency"), text(rule, "benefits"), text(rule, "notes"), text(rule, "priority"));
+        }
+        return new RuleSet(name, inputs, accepts, thresholds, actions);
+    }
+
+    private static byte comparison(String op, String where) {
+        switch (op) {
+            case "<": return RuleSet.LESS;
+            case "<=": return RuleSet.LESS | RuleSet.EQUAL;
+            case "==": return RuleSet.EQUAL;
+            case ">=": return RuleSet.GREATER | RuleSet.EQUAL;
+            case ">": return RuleSet.GREATER;
+            default: throw new IllegalArgumentException(where + " has unknown op " + op);
+        }
+    }
+
+    private static String required(JsonNode rule, String field, String where) {
+        String value = text(rule, field);
+        if (value == null) {
+            throw new IllegalArgumentException(where + " has no " + field);
+        }
+        return value;
+    }
+
+    private static String text(JsonNode rule, String field) {
+        JsonNode node = rule.get(field);
+        return node != null && !node.isNull() ? node.asText() : null;
+    }
+
+    private static void watch(Path file) {
+        Path dir = file.getParent();
+        WatchService watcher;
+        try {
+            watcher = dir.getFileSystem().newWatchService();
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (file.getFileName().equals(event.context())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        reload();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Exit quietly
+            }
+        }, "rules-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
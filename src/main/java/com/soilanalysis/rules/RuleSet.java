@@ -0,0 +1,102 @@
+package com.soilanalysis.rules;
+
+import com.soilanalysis.model.SoilData;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * One compiled list of threshold rules. Each rule is a row in parallel arrays
+ * (input, comparison, threshold), and evaluate() walks them once, returning
+ * the fired rules as a bitmask in file order. Nothing is allocated while
+ * evaluating; callers map set bits back to getAction(rule).
+ */
+public final class RuleSet {
+    public enum Input { PH, NITROGEN, PHOSPHORUS, POTASSIUM, ORGANIC_MATTER, MOISTURE, SOIL_TYPE, HEALTH_SCORE }
+
+    public static final int MAX_RULES = Long.SIZE;
+    public static final int INPUT_COUNT = Input.values().length;
+
+    // A comparison is the set of outcomes it accepts: "<=" is LESS | EQUAL
+    static final byte LESS = 1;
+    static final byte EQUAL = 2;
+    static final byte GREATER = 4;
+
+    private final String name;
+    private final int[] inputs;
+    private final byte[] accepts;
+    private final double[] thresholds;
+    private final Action[] actions;
+
+    RuleSet(String name, int[] inputs, byte[] accepts, double[] thresholds, Action[] actions) {
+        if (actions.length > MAX_RULES) {
+            throw new IllegalArgumentException("Rule set " + name + " has more than " + MAX_RULES + " rules");
+        }
+        this.name = name;
+        this.inputs = inputs;
+        this.accepts = accepts;
+        this.thresholds = thresholds;
+        this.actions = actions;
+    }
+
+    // Input vector with every value unset; unset (NaN) inputs never match a rule
+    public static double[] newInputs() {
+        double[] values = new double[INPUT_COUNT];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+
+    public static double soilType(SoilData.SoilType type) {
+        return type != null ? type.ordinal() : Double.NaN;
+    }
+
+    // Bit i is set when rule i matches the inputs, indexed by Input ordinal
+    public long evaluate(double[] values) {
+        long fired = 0;
+        for (int rule = 0; rule < inputs.length; rule++) {
+            double v = values[inputs[rule]];
+            double t = thresholds[rule];
+            int outcome = (v < t ? LESS : 0) | (v == t ? EQUAL : 0) | (v > t ? GREATER : 0);
+            fired |= (long) ((outcome & accepts[rule]) != 0 ? 1 : 0) << rule;
+        }
+        return fired;
+    }
+
+    public Action getAction(int rule) { return actions[rule]; }
+
+    public int size() { return actions.length; }
+
+    public String getName() { return name; }
+
+    public List<Action> getActions() { return List.of(actions); }
+
+    // What a fired rule recommends; text-only rule sets leave the other fields null
+    public static final class Action {
+        private final String text;
+        private final String name;
+        private final String amount;
+        private final String frequency;
+        private final String benefits;
+        private final String notes;
+        private final String priority;
+
+        Action(String text, String name, String amount, String frequency,
+               String benefits, String notes, String priority) {
+            this.text = text;
+            this.name = name;
+            this.amount = amount;
+            this.frequency = frequency;
+            this.benefits = benefits;
+            this.notes = notes;
+            this.priority = priority;
+        }
+
+        public String getText() { return text; }
+        public String getName() { return name; }
+        public String getAmount() { return amount; }
+        public String getFrequency() { return frequency; }
+        public String getBenefits() { return benefits; }
+        public String getNotes() { return notes; }
+        public String getPriority() { return priority; }
+    }
+}
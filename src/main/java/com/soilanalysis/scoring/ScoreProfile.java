@@ -0,0 +1,154 @@
+package com.soilanalysis.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A health score written as data: a weighted sum of per-measurement terms,
+ * divided by a divisor and then multiplied by a scale. A term is either
+ *  - a band: closed ranges tried innermost first, each with a score, and a
+ *    floor when the value is in none of them; or
+ *  - a ratio: value / denominator, optionally capped.
+ * ScoringKernel evaluates profiles; the constants below are the scores the
+ * app shows.
+ */
+public final class ScoreProfile {
+    public enum Input { PH, NITROGEN, PHOSPHORUS, POTASSIUM, ORGANIC_MATTER, MOISTURE, IRON, ZINC, COPPER, MANGANESE }
+
+    public static final int INPUT_COUNT = Input.values().length;
+
+    static final byte BAND = 0;
+    static final byte RATIO = 1;
+
+    /*
+     * Per-sample health on a 0-10 scale (com.soilanalysis.model.SoilAnalysis):
+     * pH and each nutrient score 10 in the optimal range, 8 within 20% of it,
+     * 6 within 40%, otherwise 4, and the score is the plain mean of the nine.
+     */
+    public static final ScoreProfile SOIL_HEALTH = builder()
+        .band(Input.PH, 1.0, 4.0, 6.0, 7.0, 10.0, 5.5, 7.5, 8.0, 5.0, 8.0, 6.0)
+        .nutrient(Input.NITROGEN, 30.0, 50.0)
+        .nutrient(Input.PHOSPHORUS, 20.0, 40.0)
+        .nutrient(Input.POTASSIUM, 40.0, 60.0)
+        .nutrient(Input.ORGANIC_MATTER, 2.0, 4.0)
+        .nutrient(Input.IRON, 4.0, 6.0)
+        .nutrient(Input.ZINC, 2.0, 4.0)
+        .nutrient(Input.COPPER, 0.8, 1.2)
+        .nutrient(Input.MANGANESE, 3.0, 5.0)
+        .divideBy(9)
+        .build();
+
+    /*
+     * Dashboard trend chart, 0-100: pH band (30%), N/P/K as a share of
+     * 200/100/300 mg/kg capped at 1 (40% between them), organic matter out
+     * of 10% (20%) and moisture out of 100% (10%).
+     */
+    public static final ScoreProfile DASHBOARD_TREND = builder()
+        .band(Input.PH, 0.3, 0.4, 6.0, 7.0, 1.0, 5.5, 7.5, 0.8, 5.0, 8.0, 0.6)
+        .ratio(Input.NITROGEN, 0.4 / 3.0, 200.0, 1.0)
+        .ratio(Input.PHOSPHORUS, 0.4 / 3.0, 100.0, 1.0)
+        .ratio(Input.POTASSIUM, 0.4 / 3.0, 300.0, 1.0)
+        .ratio(Input.ORGANIC_MATTER, 0.2, 10.0, Double.POSITIVE_INFINITY)
+        .ratio(Input.MOISTURE, 0.1, 100.0, Double.POSITIVE_INFINITY)
+        .scale(100)
+        .build();
+
+    final int[] inputs;
+    final byte[] kinds;
+    final double[] weights;
+    // Bands: see Builder.band; ratios: {denominator, cap}
+    final double[][] params;
+    final double divisor;
+    final double scale;
+
+    private ScoreProfile(Builder builder) {
+        int n = builder.inputs.size();
+        inputs = new int[n];
+        kinds = new byte[n];
+        weights = new double[n];
+        params = new double[n][];
+        for (int i = 0; i < n; i++) {
+            inputs[i] = builder.inputs.get(i);
+            kinds[i] = builder.kinds.get(i);
+            weights[i] = builder.weights.get(i);
+            params[i] = builder.params.get(i);
+        }
+        divisor = builder.divisor;
+        scale = builder.scale;
+    }
+
+    public int terms() { return inputs.length; }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<Integer> inputs = new ArrayList<>();
+        private final List<Byte> kinds = new ArrayList<>();
+        private final List<Double> weights = new ArrayList<>();
+        private final List<double[]> params = new ArrayList<>();
+        private double divisor = 1.0;
+        private double scale = 1.0;
+
+        /*
+         * tiers are {low, high, score} triples, innermost range first; each
+         * range must contain the one before it and score no higher.
+         */
+        public Builder band(Input input, double weight, double floor, double... tiers) {
+            if (tiers.length == 0 || tiers.length % 3 != 0) {
+                throw new IllegalArgumentException("Band tiers must be {low, high, score} triples");
+            }
+            int n = tiers.length / 3;
+            // Laid out for the kernel: scores indexed by how many ranges hold the value, then ranges outermost first
+            double[] p = new double[n + 1 + 2 * n];
+            p[0] = floor;
+            for (int t = 0; t < n; t++) {
+                int inner = n - 1 - t;
+                double low = tiers[inner * 3];
+                double high = tiers[inner * 3 + 1];
+                if (t > 0 && (low < p[n + 2 * t - 1] || high > p[n + 2 * t] || tiers[inner * 3 + 2] < p[t])) {
+                    throw new IllegalArgumentException("Band tiers must be nested with scores rising inwards");
+                }
+                p[t + 1] = tiers[inner * 3 + 2];
+                p[n + 1 + 2 * t] = low;
+                p[n + 2 + 2 * t] = high;
+            }
+            return add(input, BAND, weight, p);
+        }
+
+        // Optimal range scores 10, within 20% of it 8, within 40% 6, otherwise 4
+        public Builder nutrient(Input input, double min, double max) {
+            return band(input, 1.0, 4.0,
+                min, max, 10.0,
+                min * 0.8, max * 1.2, 8.0,
+                min * 0.6, max * 1.4, 6.0);
+        }
+
+        public Builder ratio(Input input, double weight, double denominator, double cap) {
+            return add(input, RATIO, weight, new double[] {denominator, cap});
+        }
+
+        public Builder divideBy(double divisor) {
+            this.divisor = divisor;
+            return this;
+        }
+
+        public Builder scale(double scale) {
+            this.scale = scale;
+            return this;
+        }
+
+        private Builder add(Input input, byte kind, double weight, double[] p) {
+            inputs.add(input.ordinal());
+            kinds.add(kind);
+            weights.add(weight);
+            params.add(p);
+            return this;
+        }
+
+        public ScoreProfile build() {
+            return new ScoreProfile(this);
+        }
+    }
+}
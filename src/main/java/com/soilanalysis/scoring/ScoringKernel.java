@@ -0,0 +1,177 @@
+package com.soilanalysis.scoring;
+
+import com.soilanalysis.model.SoilData;
+
+import java.util.Random;
+
+/*
+ * Evaluates a ScoreProfile, for one sample or for whole primitive columns.
+ *
+ * Band tiers are nested, so the tier a value falls in is just the number of
+ * ranges containing it. The kernel counts those with 0/1 arithmetic and looks
+ * the score up by count, with no early exit. The JIT can turn each step into
+ * a conditional move instead of a branch it might mispredict. scoreAll() goes
+ * term by term over the columns, giving one tight loop per measurement, and
+ * allocates nothing.
+ *
+ * Terms are added in profile order, starting from 0.0. That is the same
+ * order the old hand-written scores used, so the results match them bit
+ * for bit.
+ */
+public final class ScoringKernel {
+    interface BulkScorer {
+        void scoreAll(ScoreProfile profile, double[][] columns, int count, double[] out);
+    }
+
+    // Below this many rows the SIMD setup isn't worth it
+    private static final int VECTOR_MIN_ROWS = 64;
+    // SIMD scorer if jdk.incubator.vector is present and passed its self-check, else null
+    private static final BulkScorer VECTOR = loadVectorScorer();
+
+    private ScoringKernel() {
+    }
+
+    public static boolean isVectorized() { return VECTOR != null; }
+
+    // sample is indexed by ScoreProfile.Input ordinal
+    public static double score(ScoreProfile profile, double[] sample) {
+        double total = 0.0;
+        for (int term = 0; term < profile.inputs.length; term++) {
+            double v = sample[profile.inputs[term]];
+            double[] p = profile.params[term];
+            double s = profile.kinds[term] == ScoreProfile.BAND ? band(v, p) : Math.min(v / p[0], p[1]);
+            total += s * profile.weights[term];
+        }
+        return total / profile.divisor * profile.scale;
+    }
+
+    /*
+     * Scores rows [0, count) into out. columns[input ordinal] holds that
+     * measurement for every row; columns the profile doesn't use may be null.
+     */
+    public static void scoreAll(ScoreProfile profile, double[][] columns, int count, double[] out) {
+        if (VECTOR != null && count >= VECTOR_MIN_ROWS) {
+            VECTOR.scoreAll(profile, columns, count, out);
+        } else {
+            scalarScoreAll(profile, columns, count, out);
+        }
+    }
+
+    static void scalarScoreAll(ScoreProfile profile, double[][] columns, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = 0.0;
+        }
+        for (int term = 0; term < profile.inputs.length; term++) {
+            double[] column = columns[profile.inputs[term]];
+            double[] p = profile.params[term];
+            double weight = profile.weights[term];
+            if (profile.kinds[term] == ScoreProfile.BAND) {
+                for (int i = 0; i < count; i++) {
+                    out[i] += band(column[i], p) * weight;
+                }
+            } else {
+                double denominator = p[0];
+                double cap = p[1];
+                for (int i = 0; i < count; i++) {
+                    out[i] += Math.min(column[i] / denominator, cap) * weight;
+                }
+            }
+        }
+        double divisor = profile.divisor;
+        double scale = profile.scale;
+        for (int i = 0; i < count; i++) {
+            out[i] = out[i] / divisor * scale;
+        }
+    }
+
+    // p is {scores by tiers matched..., then low/high pairs outermost first}; see ScoreProfile
+    static double band(double v, double[] p) {
+        int tiers = p.length / 3;
+        int matched = 0;
+        for (int t = tiers + 1; t < p.length; t += 2) {
+            matched += (v >= p[t] ? 1 : 0) & (v <= p[t + 1] ? 1 : 0);
+        }
+        return p[matched];
+    }
+
+    /*
+     * The Vector API is an incubator module in Java 17: it is only there when
+     * the JVM runs with --add-modules jdk.incubator.vector. It can be turned
+     * off with -Dsoil.scoring.vector=false. Before it is used, it has to
+     * reproduce the scalar scores bit for bit on band edges, NaN and
+     * non-lane-multiple lengths.
+     */
+    private static BulkScorer loadVectorScorer() {
+        if (!Boolean.parseBoolean(System.getProperty("soil.scoring.vector", "true"))) {
+            return null;
+        }
+        BulkScorer scorer;
+        try {
+            scorer = (BulkScorer) Class.forName("com.soilanalysis.scoring.VectorScorer")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+        try {
+            if (matchesScalar(scorer, ScoreProfile.SOIL_HEALTH) && matchesScalar(scorer, ScoreProfile.DASHBOARD_TREND)) {
+                return scorer;
+            }
+            System.err.println("Vector scoring disagrees with the scalar scores; using scalar scoring");
+        } catch (RuntimeException | LinkageError e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static boolean matchesScalar(BulkScorer scorer, ScoreProfile profile) {
+        // Every band edge and its neighbours, plus a few awkward values, in every column
+        double[] special = {0.0, -0.0, Double.NaN, -1.0, 1e9, Double.POSITIVE_INFINITY};
+        int count = 1021;
+        double[][] columns = new double[ScoreProfile.INPUT_COUNT][count];
+        Random random = new Random(17);
+        for (int term = 0; term < profile.inputs.length; term++) {
+            double[] column = columns[profile.inputs[term]];
+            double[] p = profile.params[term];
+            int i = 0;
+            for (double edge : p) {
+                if (i + 3 > count) {
+                    break;
+                }
+                column[i++] = Math.nextDown(edge);
+                column[i++] = edge;
+                column[i++] = Math.nextUp(edge);
+            }
+            for (double v : special) {
+                column[i++] = v;
+            }
+            for (; i < count; i++) {
+                column[i] = random.nextDouble() * 2 * p[p.length - 1];
+            }
+        }
+        double[] expected = new double[count];
+        double[] actual = new double[count];
+        scalarScoreAll(profile, columns, count, expected);
+        scorer.scoreAll(profile, columns, count, actual);
+        for (int i = 0; i < count; i++) {
+            if (Double.doubleToRawLongBits(expected[i]) != Double.doubleToRawLongBits(actual[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Fills a ScoreProfile.Input-indexed sample from SoilData
+    public static double[] sample(SoilData data, double[] into) {
+        into[ScoreProfile.Input.PH.ordinal()] = data.getPh();
+        into[ScoreProfile.Input.NITROGEN.ordinal()] = data.getNitrogen();
+        into[ScoreProfile.Input.PHOSPHORUS.ordinal()] = data.getPhosphorus();
+        into[ScoreProfile.Input.POTASSIUM.ordinal()] = data.getPotassium();
+        into[ScoreProfile.Input.ORGANIC_MATTER.ordinal()] = data.getOrganicMatter();
+        into[ScoreProfile.Input.MOISTURE.ordinal()] = data.getMoisture();
+        into[ScoreProfile.Input.IRON.ordinal()] = data.getIron();
+        into[ScoreProfile.Input.ZINC.ordinal()] = data.getZinc();
+        into[ScoreProfile.Input.COPPER.ordinal()] = data.getCopper();
+        into[ScoreProfile.Input.MANGANESE.ordinal()] = data.getManganese();
+        return into;
+    }
+}
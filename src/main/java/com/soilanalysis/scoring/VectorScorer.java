@@ -0,0 +1,71 @@
+package com.soilanalysis.scoring;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * scoreAll() on the incubating Vector API: each step loads a lane-width
+ * slice of a column. Band tiers are blended outermost to innermost under
+ * range masks, so the innermost range holding a lane sets its score. Ratio
+ * terms are a lane-wise divide and min. The arithmetic is the same IEEE
+ * operations in the same order as the scalar loop, so results are identical.
+ *
+ * Only loaded reflectively by ScoringKernel, which falls back to the scalar
+ * loop when the JVM was started without --add-modules jdk.incubator.vector.
+ */
+final class VectorScorer implements ScoringKernel.BulkScorer {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void scoreAll(ScoreProfile profile, double[][] columns, int count, double[] out) {
+        int bound = SPECIES.loopBound(count);
+        int lanes = SPECIES.length();
+        for (int i = 0; i < count; i++) {
+            out[i] = 0.0;
+        }
+        for (int term = 0; term < profile.inputs.length; term++) {
+            double[] column = columns[profile.inputs[term]];
+            double[] p = profile.params[term];
+            double weight = profile.weights[term];
+            int i = 0;
+            if (profile.kinds[term] == ScoreProfile.BAND) {
+                int tiers = p.length / 3;
+                for (; i < bound; i += lanes) {
+                    DoubleVector v = DoubleVector.fromArray(SPECIES, column, i);
+                    DoubleVector s = DoubleVector.broadcast(SPECIES, p[0]);
+                    for (int t = 0; t < tiers; t++) {
+                        int range = tiers + 1 + 2 * t;
+                        VectorMask<Double> inside = v.compare(VectorOperators.GE, p[range])
+                            .and(v.compare(VectorOperators.LE, p[range + 1]));
+                        s = s.blend(p[t + 1], inside);
+                    }
+                    DoubleVector.fromArray(SPECIES, out, i).add(s.mul(weight)).intoArray(out, i);
+                }
+                for (; i < count; i++) {
+                    out[i] += ScoringKernel.band(column[i], p) * weight;
+                }
+            } else {
+                double denominator = p[0];
+                double cap = p[1];
+                for (; i < bound; i += lanes) {
+                    DoubleVector s = DoubleVector.fromArray(SPECIES, column, i).div(denominator).min(cap);
+                    DoubleVector.fromArray(SPECIES, out, i).add(s.mul(weight)).intoArray(out, i);
+                }
+                for (; i < count; i++) {
+                    out[i] += Math.min(column[i] / denominator, cap) * weight;
+                }
+            }
+        }
+        double divisor = profile.divisor;
+        double scale = profile.scale;
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            DoubleVector.fromArray(SPECIES, out, i).div(divisor).mul(scale).intoArray(out, i);
+        }
+        for (; i < count; i++) {
+            out[i] = out[i] / divisor * scale;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilData.Field;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * The sections of a SoilAnalysis, each with the sample fields and earlier
+ * stages it is computed from. Declaration order is a valid evaluation
+ * order: a stage only depends on stages declared before it.
+ * SoilAnalyzerService.updateAnalysis() walks this graph to recompute only
+ * the sections a correction can change.
+ */
+public enum AnalysisStage {
+    HEALTH_SCORE(EnumSet.of(Field.PH, Field.NITROGEN, Field.PHOSPHORUS, Field.POTASSIUM,
+        Field.ORGANIC_MATTER, Field.MOISTURE, Field.IRON, Field.ZINC, Field.COPPER, Field.MANGANESE)),
+    OVERALL_ASSESSMENT(EnumSet.noneOf(Field.class), HEALTH_SCORE),
+    // Analyzer rules read the health score; iron and zinc add the micronutrient products
+    RECOMMENDATIONS(EnumSet.of(Field.PH, Field.NITROGEN, Field.PHOSPHORUS, Field.POTASSIUM,
+        Field.ORGANIC_MATTER, Field.MOISTURE, Field.SOIL_TYPE, Field.IRON, Field.ZINC), HEALTH_SCORE),
+    IMPROVEMENT_AREAS(EnumSet.of(Field.PH, Field.NITROGEN, Field.PHOSPHORUS, Field.POTASSIUM,
+        Field.ORGANIC_MATTER, Field.MOISTURE)),
+    NUTRIENT_SCORES(EnumSet.of(Field.IRON, Field.ZINC, Field.COPPER, Field.MANGANESE)),
+    CROP_SUITABILITY(EnumSet.of(Field.PH, Field.NITROGEN, Field.PHOSPHORUS, Field.POTASSIUM,
+        Field.SOIL_TYPE, Field.CROP_TYPE)),
+    ENVIRONMENTAL_IMPACTS(EnumSet.of(Field.NITROGEN, Field.ORGANIC_MATTER)),
+    SEASONAL_RECOMMENDATIONS(EnumSet.of(Field.SEASON, Field.TEMPERATURE, Field.MOISTURE));
+
+    private final Set<Field> fields;
+    // An array rather than an EnumSet: EnumSets of this type can't be built while its constants are
+    private final AnalysisStage[] upstream;
+
+    AnalysisStage(Set<Field> fields, AnalysisStage... upstream) {
+        this.fields = fields;
+        this.upstream = upstream;
+    }
+
+    public boolean readsAny(Collection<Field> changed) {
+        for (Field field : changed) {
+            if (fields.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean dependsOnAny(Set<AnalysisStage> stages) {
+        for (AnalysisStage stage : upstream) {
+            if (stages.contains(stage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Every stage a change to these fields can reach, directly or through an earlier stage
+    public static Set<AnalysisStage> affectedBy(Collection<Field> changed) {
+        Set<AnalysisStage> affected = EnumSet.noneOf(AnalysisStage.class);
+        for (AnalysisStage stage : values()) {
+            if (stage.readsAny(changed) || stage.dependsOnAny(affected)) {
+                affected.add(stage);
+            }
+        }
+        return affected;
+    }
+}
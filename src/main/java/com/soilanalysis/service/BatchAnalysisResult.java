@@ -0,0 +1,53 @@
+package com.soilanalysis.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class BatchAnalysisResult<T> {
+    private final List<T> results;
+    private final Map<Integer, RuntimeException> failures;
+    private final long elapsedNanos;
+
+    BatchAnalysisResult(T[] results, RuntimeException[] failures, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(Arrays.asList(results));
+        Map<Integer, RuntimeException> failed = new TreeMap<>();
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null) {
+                failed.put(i, failures[i]);
+            }
+        }
+        this.failures = Collections.unmodifiableMap(failed);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Results in input order; failed samples leave a null slot at their index
+    public List<T> getResults() { return results; }
+
+    // Failures keyed by the index of the sample in the input collection
+    public Map<Integer, RuntimeException> getFailures() { return failures; }
+
+    public int getSampleCount() { return results.size(); }
+
+    public int getSuccessCount() { return results.size() - failures.size(); }
+
+    public int getFailureCount() { return failures.size(); }
+
+    public boolean hasFailures() { return !failures.isEmpty(); }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getElapsedMillis() { return elapsedNanos / 1_000_000.0; }
+
+    public double getSamplesPerSecond() {
+        return elapsedNanos > 0 ? results.size() * 1_000_000_000.0 / elapsedNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchAnalysisResult{samples=%d, failures=%d, elapsed=%.1f ms, throughput=%.0f samples/s}",
+                getSampleCount(), getFailureCount(), getElapsedMillis(), getSamplesPerSecond());
+    }
+}
@@ -0,0 +1,312 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilAnalysis;
+import com.soilanalysis.model.SoilAnalysis.FertilizerRecommendation;
+import com.soilanalysis.model.SoilData;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BatchIngestPipeline {
+
+    private static final String[] OUTPUT_COLUMNS = {
+        "line", "sample_id", "location", "health_score", "overall_assessment",
+        "recommendations", "improvement_areas", "error"
+    };
+
+    private final SoilAnalyzerService analyzerService;
+    private final int workers;
+    private final int queueCapacity;
+
+    public BatchIngestPipeline(SoilAnalyzerService analyzerService) {
+        this(analyzerService, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    public BatchIngestPipeline(SoilAnalyzerService analyzerService, int workers, int queueCapacity) {
+        if (workers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workers and queueCapacity must be positive");
+        }
+        this.analyzerService = analyzerService;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    // A row travelling through the pipeline; END tells the next stage its producer is done
+    private static class Item {
+        private static final Item END = new Item(-1, null, null);
+
+        final long line;
+        final SoilData soilData;
+        String error;
+        SoilAnalysis analysis;
+
+        Item(long line, SoilData soilData, String error) {
+            this.line = line;
+            this.soilData = soilData;
+            this.error = error;
+        }
+    }
+
+    public static class Summary {
+        private final long rowsRead;
+        private final long rowsAnalyzed;
+        private final long rowsFailed;
+        private final long elapsedNanos;
+
+        Summary(long rowsRead, long rowsAnalyzed, long rowsFailed, long elapsedNanos) {
+            this.rowsRead = rowsRead;
+            this.rowsAnalyzed = rowsAnalyzed;
+            this.rowsFailed = rowsFailed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsAnalyzed() { return rowsAnalyzed; }
+        public long getRowsFailed() { return rowsFailed; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? rowsRead * 1_000_000_000.0 / elapsedNanos : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows read, %d analyzed, %d failed in %.1f s (%.0f rows/s)",
+                    rowsRead, rowsAnalyzed, rowsFailed, elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+        }
+    }
+
+    /*
+     * Streams input through three stages connected by bounded queues:
+     * the calling thread reads and parses, a fixed set of workers analyze,
+     * and a single writer appends results. A full queue blocks the stage
+     * feeding it, so at most a few thousand rows are ever held in memory.
+     * Output rows appear in completion order; the line column ties them
+     * back to the input.
+     */
+    public Summary run(Path input, Path output) throws IOException, InterruptedException {
+        return run(input, output, null);
+    }
+
+    // As run(input, output), also appending every analyzed sample to archive if it isn't null
+    public Summary run(Path input, Path output, SoilSampleArchive archive) throws IOException, InterruptedException {
+        BlockingQueue<Item> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> analyzed = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Error> analyzerError = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Input file is empty: " + input);
+            }
+            SoilDataParser parser = new SoilDataParser(header, SoilDataParser.detectDelimiter(header));
+            char delimiter = parser.getDelimiter();
+
+            Thread[] analyzers = new Thread[workers];
+            for (int i = 0; i < workers; i++) {
+                analyzers[i] = new Thread(() -> analyzeStage(parsed, analyzed, analyzerError), "ingest-analyzer-" + i);
+                analyzers[i].setDaemon(true);
+                analyzers[i].start();
+            }
+            WriteStage writeStage = new WriteStage(analyzed, writer, delimiter, workers, archive);
+            Thread writerThread = new Thread(writeStage, "ingest-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+
+            long rowsRead = 0;
+            try {
+                String line;
+                long lineNumber = 1;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    rowsRead++;
+                    try {
+                        parsed.put(new Item(lineNumber, parser.parse(line), null));
+                    } catch (IllegalArgumentException e) {
+                        parsed.put(new Item(lineNumber, null, e.getMessage()));
+                    }
+                }
+            } finally {
+                // Always release the workers, even if reading failed part way
+                for (int i = 0; i < workers; i++) {
+                    parsed.put(Item.END);
+                }
+                for (Thread analyzer : analyzers) {
+                    analyzer.join();
+                }
+                writerThread.join();
+            }
+
+            if (analyzerError.get() != null) {
+                throw analyzerError.get();
+            }
+            Throwable writeFailure = writeStage.failure;
+            if (writeFailure instanceof IOException) {
+                throw (IOException) writeFailure;
+            } else if (writeFailure instanceof RuntimeException) {
+                throw (RuntimeException) writeFailure;
+            } else if (writeFailure != null) {
+                throw (Error) writeFailure;
+            }
+            return new Summary(rowsRead, writeStage.analyzed, writeStage.failed, System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * An Error (out of memory, stack overflow) fails its row and is kept
+     * for run() to rethrow; the worker then passes the remaining rows
+     * through as failed. Either way every worker forwards END, so the
+     * writer always finishes and the reader never blocks on a queue
+     * nobody drains.
+     */
+    private void analyzeStage(BlockingQueue<Item> in, BlockingQueue<Item> out, AtomicReference<Error> analyzerError) {
+        try {
+            while (true) {
+                Item item = in.take();
+                if (item == Item.END) {
+                    return;
+                }
+                if (item.error == null && analyzerError.get() != null) {
+                    item.error = "Analysis skipped after analyzer error: " + analyzerError.get();
+                } else if (item.error == null) {
+                    try {
+                        item.analysis = analyzerService.analyzeSoil(item.soilData);
+                    } catch (RuntimeException e) {
+                        item.error = "Analysis failed: " + e;
+                    } catch (Error e) {
+                        analyzerError.compareAndSet(null, e);
+                        item.error = "Analysis failed: " + e;
+                    }
+                }
+                out.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                out.put(Item.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class WriteStage implements Runnable {
+        private final BlockingQueue<Item> in;
+        private final BufferedWriter writer;
+        private final char delimiter;
+        private final int producers;
+        private final SoilSampleArchive archive;
+        private long analyzed;
+        private long failed;
+        // First write failure; writeItem only throws IOException or unchecked ones
+        private volatile Throwable failure;
+
+        WriteStage(BlockingQueue<Item> in, BufferedWriter writer, char delimiter, int producers,
+                   SoilSampleArchive archive) {
+            this.in = in;
+            this.writer = writer;
+            this.delimiter = delimiter;
+            this.producers = producers;
+            this.archive = archive;
+        }
+
+        @Override
+        public void run() {
+            try {
+                writeRow(OUTPUT_COLUMNS);
+            } catch (Throwable e) {
+                failure = e;
+            }
+            int finished = 0;
+            try {
+                while (finished < producers) {
+                    Item item = in.take();
+                    if (item == Item.END) {
+                        finished++;
+                        continue;
+                    }
+                    if (item.error == null) {
+                        analyzed++;
+                    } else {
+                        failed++;
+                    }
+                    // After any write failure keep draining so upstream stages never block forever
+                    if (failure == null) {
+                        try {
+                            writeItem(item);
+                            if (archive != null && item.analysis != null) {
+                                archive.append(item.soilData);
+                            }
+                        } catch (Throwable e) {
+                            failure = e;
+                        }
+                    }
+                }
+                if (failure == null) {
+                    writer.flush();
+                    if (archive != null) {
+                        archive.flush();
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeItem(Item item) throws IOException {
+            SoilAnalysis analysis = item.analysis;
+            if (analysis == null) {
+                writeRow(String.valueOf(item.line), "", "", "", "", "", "", item.error);
+                return;
+            }
+            StringJoiner recommendations = new StringJoiner("; ");
+            for (FertilizerRecommendation recommendation : analysis.getRecommendations()) {
+                recommendations.add(recommendation.getName());
+            }
+            SoilData soilData = analysis.getSoilData();
+            writeRow(String.valueOf(item.line),
+                    soilData.getId(),
+                    soilData.getLocation() != null ? soilData.getLocation() : "",
+                    String.format(Locale.ROOT, "%.2f", analysis.getHealthScore()),
+                    analysis.getOverallAssessment(),
+                    recommendations.toString(),
+                    String.join("; ", analysis.getImprovementAreas()),
+                    "");
+        }
+
+        private void writeRow(String... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(delimiter);
+                }
+                writer.write(quote(values[i]));
+            }
+            writer.newLine();
+        }
+
+        private String quote(String value) {
+            if (value.indexOf(delimiter) < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
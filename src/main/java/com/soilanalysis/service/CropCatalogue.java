@@ -0,0 +1,376 @@
+package com.soilanalysis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.Season;
+import com.soilanalysis.model.SoilData.SoilType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * The crops the analyzer knows about, loaded from /crops/crop-catalogue.json
+ * (or the file named by the soil.crops.file system property). Crops get int
+ * ids in file order. Lookups by name are case-insensitive. For each soil
+ * type and season there is a bitset of the crops that prefer it or can be
+ * planted in it, so rank() can drop candidates with a few word ANDs before
+ * scoring what is left through the CropSuitabilityMatrix.
+ */
+public final class CropCatalogue {
+    private static final String BUNDLED_CATALOGUE = "/crops/crop-catalogue.json";
+
+    private static class DefaultHolder {
+        static final CropCatalogue INSTANCE = loadDefault();
+    }
+
+    private final List<Crop> crops;
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final int[] defaultCrops;
+    private final CropSuitabilityMatrix matrix;
+    private final int words;
+    private final long[][] bySoil;
+    private final long[][] bySeason;
+
+    public CropCatalogue(List<Crop> crops) {
+        this.crops = Collections.unmodifiableList(new ArrayList<>(crops));
+        this.words = (crops.size() + 63) >>> 6;
+        this.bySoil = new long[SoilType.values().length][words];
+        this.bySeason = new long[Season.values().length][words];
+        int[] defaults = new int[crops.size()];
+        int defaultCount = 0;
+        for (int id = 0; id < crops.size(); id++) {
+            Crop crop = crops.get(id);
+            if (idsByName.putIfAbsent(crop.getName().toLowerCase(), id) != null) {
+                throw new IllegalArgumentException("Duplicate crop " + crop.getName());
+            }
+            if (crop.isDefault()) {
+                defaults[defaultCount++] = id;
+            }
+            for (SoilType type : crop.getPreferredSoils()) {
+                bySoil[type.ordinal()][id >>> 6] |= 1L << id;
+            }
+            for (Season season : crop.getSeasons()) {
+                bySeason[season.ordinal()][id >>> 6] |= 1L << id;
+            }
+        }
+        this.defaultCrops = Arrays.copyOf(defaults, defaultCount);
+        this.matrix = new CropSuitabilityMatrix(this.crops);
+    }
+
+    public static CropCatalogue getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static CropCatalogue loadDefault() {
+        String file = System.getProperty("soil.crops.file");
+        try (InputStream in = file != null
+                ? Files.newInputStream(Paths.get(file))
+                : CropCatalogue.class.getResourceAsStream(BUNDLED_CATALOGUE)) {
+            if (in == null) {
+                throw new IOException(BUNDLED_CATALOGUE + " not found on the classpath");
+            }
+            return load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the crop catalogue", e);
+        }
+    }
+
+    /*
+     * {"defaults": {...}, "crops": [...]}. A crop has a name, ph as
+     * [min, max, low, high], and optional soils, seasons, "default" and
+     * nitrogen/phosphorus/potassium [min, max]. Missing nutrient ranges come
+     * from "defaults".
+     */
+    public static CropCatalogue load(InputStream in) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(in);
+        JsonNode defaults = root.path("defaults");
+        JsonNode entries = root.path("crops");
+        if (!entries.isArray()) {
+            throw new IOException("Crop catalogue has no crops array");
+        }
+        List<Crop> crops = new ArrayList<>();
+        for (JsonNode entry : entries) {
+            String name = entry.path("name").asText(null);
+            JsonNode ph = entry.path("ph");
+            if (name == null || ph.size() != 4) {
+                throw new IOException("Crop entry needs a name and ph [min, max, low, high]: " + entry);
+            }
+            Set<SoilType> soils = EnumSet.noneOf(SoilType.class);
+            for (JsonNode soil : entry.path("soils")) {
+                soils.add(SoilType.valueOf(soil.asText()));
+            }
+            Set<Season> seasons = EnumSet.noneOf(Season.class);
+            for (JsonNode season : entry.path("seasons")) {
+                seasons.add(Season.valueOf(season.asText()));
+            }
+            double[] n = range(entry, defaults, "nitrogen");
+            double[] p = range(entry, defaults, "phosphorus");
+            double[] k = range(entry, defaults, "potassium");
+            crops.add(new Crop(name, entry.path("default").asBoolean(false),
+                ph.get(0).asDouble(), ph.get(1).asDouble(), ph.get(2).asDouble(), ph.get(3).asDouble(),
+                n[0], n[1], p[0], p[1], k[0], k[1], soils, seasons));
+        }
+        return new CropCatalogue(crops);
+    }
+
+    private static double[] range(JsonNode entry, JsonNode defaults, String field) throws IOException {
+        JsonNode range = entry.has(field) ? entry.get(field) : defaults.path(field);
+        if (range.size() != 2) {
+            throw new IOException("No " + field + " range for crop " + entry.path("name").asText());
+        }
+        return new double[] {range.get(0).asDouble(), range.get(1).asDouble()};
+    }
+
+    public List<Crop> getCrops() { return crops; }
+
+    public int size() { return crops.size(); }
+
+    public Crop getCrop(int id) { return crops.get(id); }
+
+    public CropSuitabilityMatrix getMatrix() { return matrix; }
+
+    // Case-insensitive; -1 for an unknown crop
+    public int cropId(String name) {
+        Integer id = name != null ? idsByName.get(name.trim().toLowerCase()) : null;
+        return id != null ? id : -1;
+    }
+
+    /*
+     * Ids for a comma-separated crop list such as SoilData.getCropType(), in
+     * list order, skipping unknown names and repeats. Falls back to the
+     * catalogue's default crops when nothing in the list is known.
+     */
+    public int[] resolve(String cropList) {
+        if (cropList == null || cropList.isBlank()) {
+            return defaultCrops.clone();
+        }
+        String[] names = cropList.split(",");
+        int[] ids = new int[names.length];
+        long[] seen = new long[words];
+        int count = 0;
+        for (String name : names) {
+            int id = cropId(name);
+            if (id >= 0 && (seen[id >>> 6] & (1L << id)) == 0) {
+                seen[id >>> 6] |= 1L << id;
+                ids[count++] = id;
+            }
+        }
+        return count > 0 ? Arrays.copyOf(ids, count) : defaultCrops.clone();
+    }
+
+    /*
+     * Scores every crop that survives pruning, best first, ties by id.
+     * season (if not null) keeps only crops planted in it; preferredSoilOnly
+     * keeps only crops that prefer the sample's soil type.
+     */
+    public Ranking rank(SoilData data, Season season, boolean preferredSoilOnly) {
+        long[] candidates = candidates(data, season, preferredSoilOnly);
+        int[] key = matrix.quantize(data, new int[matrix.keyLength()]);
+        long[] order = new long[crops.size()];
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                int crop = (w << 6) + Long.numberOfTrailingZeros(bits);
+                // Score rank in the high half, crop id in the low half: sorting gives best first, then by id
+                order[count++] = (long) CropSuitabilityMatrix.rankAt(matrix.scoreIndex(crop, key)) << 32 | crop;
+            }
+        }
+        Arrays.sort(order, 0, count);
+        int[] ids = new int[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) order[i];
+            scores[i] = matrix.score(ids[i], key);
+        }
+        return new Ranking(ids, scores);
+    }
+
+    /*
+     * The k best crops from rank(), without scoring into a full list: a
+     * bounded max-heap of (score rank, crop id) keys keeps the current top k.
+     * The scan stops early once all k hold the best possible score, since
+     * later crops (higher ids) can't displace them.
+     */
+    public Ranking top(SoilData data, Season season, boolean preferredSoilOnly, int k) {
+        if (k <= 0) {
+            return new Ranking(new int[0], new double[0]);
+        }
+        long[] candidates = candidates(data, season, preferredSoilOnly);
+        int[] key = matrix.quantize(data, new int[matrix.keyLength()]);
+        long[] heap = new long[Math.min(k, crops.size())];
+        int size = 0;
+        scan:
+        for (int w = 0; w < words; w++) {
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                int crop = (w << 6) + Long.numberOfTrailingZeros(bits);
+                long entry = (long) CropSuitabilityMatrix.rankAt(matrix.scoreIndex(crop, key)) << 32 | crop;
+                if (size < heap.length) {
+                    heap[size] = entry;
+                    siftUp(heap, size++);
+                } else if (entry < heap[0]) {
+                    heap[0] = entry;
+                    siftDown(heap, size);
+                }
+                if (size == heap.length && heap[0] >>> 32 == 0) {
+                    break scan;
+                }
+            }
+        }
+        Arrays.sort(heap, 0, size);
+        int[] ids = new int[size];
+        double[] scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = (int) heap[i];
+            scores[i] = matrix.score(ids[i], key);
+        }
+        return new Ranking(ids, scores);
+    }
+
+    // Max-heap on the packed key, so heap[0] is the weakest of the current top k
+    private static void siftUp(long[] heap, int i) {
+        long entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long entry = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= entry) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+
+    long[] candidates(SoilData data, Season season, boolean preferredSoilOnly) {
+        long[] candidates = new long[words];
+        Arrays.fill(candidates, -1L);
+        if ((crops.size() & 63) != 0) {
+            candidates[words - 1] = (1L << (crops.size() & 63)) - 1;
+        }
+        if (season != null) {
+            and(candidates, bySeason[season.ordinal()]);
+        }
+        if (preferredSoilOnly) {
+            if (data.getSoilType() == null) {
+                Arrays.fill(candidates, 0L);
+            } else {
+                and(candidates, bySoil[data.getSoilType().ordinal()]);
+            }
+        }
+        return candidates;
+    }
+
+    private static void and(long[] into, long[] mask) {
+        for (int w = 0; w < into.length; w++) {
+            into[w] &= mask[w];
+        }
+    }
+
+    public final class Ranking {
+        private final int[] cropIds;
+        private final double[] scores;
+
+        Ranking(int[] cropIds, double[] scores) {
+            this.cropIds = cropIds;
+            this.scores = scores;
+        }
+
+        public int size() { return cropIds.length; }
+        public int getCropId(int rank) { return cropIds[rank]; }
+        public Crop getCrop(int rank) { return crops.get(cropIds[rank]); }
+        public double getScore(int rank) { return scores[rank]; }
+    }
+
+    public static final class Crop {
+        private final String name;
+        private final boolean defaultCrop;
+        // pH scores 10 inside [phMin, phMax], 7 inside [phLow, phHigh], otherwise 4
+        private final double phMin;
+        private final double phMax;
+        private final double phLow;
+        private final double phHigh;
+        private final double nitrogenMin;
+        private final double nitrogenMax;
+        private final double phosphorusMin;
+        private final double phosphorusMax;
+        private final double potassiumMin;
+        private final double potassiumMax;
+        private final Set<SoilType> preferredSoils;
+        private final Set<Season> seasons;
+
+        public Crop(String name, boolean defaultCrop,
+                    double phMin, double phMax, double phLow, double phHigh,
+                    double nitrogenMin, double nitrogenMax,
+                    double phosphorusMin, double phosphorusMax,
+                    double potassiumMin, double potassiumMax,
+                    Set<SoilType> preferredSoils, Set<Season> seasons) {
+            this.name = name;
+            this.defaultCrop = defaultCrop;
+            this.phMin = phMin;
+            this.phMax = phMax;
+            this.phLow = phLow;
+            this.phHigh = phHigh;
+            this.nitrogenMin = nitrogenMin;
+            this.nitrogenMax = nitrogenMax;
+            this.phosphorusMin = phosphorusMin;
+            this.phosphorusMax = phosphorusMax;
+            this.potassiumMin = potassiumMin;
+            this.potassiumMax = potassiumMax;
+            this.preferredSoils = Collections.unmodifiableSet(preferredSoils.isEmpty()
+                ? EnumSet.noneOf(SoilType.class) : EnumSet.copyOf(preferredSoils));
+            this.seasons = Collections.unmodifiableSet(seasons.isEmpty()
+                ? EnumSet.noneOf(Season.class) : EnumSet.copyOf(seasons));
+        }
+
+        public String getName() { return name; }
+        public boolean isDefault() { return defaultCrop; }
+        public double getPhMin() { return phMin; }
+        public double getPhMax() { return phMax; }
+        public double getPhLow() { return phLow; }
+        public double getPhHigh() { return phHigh; }
+        public double getNitrogenMin() { return nitrogenMin; }
+        public double getNitrogenMax() { return nitrogenMax; }
+        public double getPhosphorusMin() { return phosphorusMin; }
+        public double getPhosphorusMax() { return phosphorusMax; }
+        public double getPotassiumMin() { return potassiumMin; }
+        public double getPotassiumMax() { return potassiumMax; }
+        public Set<SoilType> getPreferredSoils() { return preferredSoils; }
+        public Set<Season> getSeasons() { return seasons; }
+
+        // 0, 1 or 2 for a pH score of 10, 7 or 4
+        int phTier(double ph) {
+            return (ph >= phMin && ph <= phMax) ? 0 : (ph >= phLow && ph <= phHigh) ? 1 : 2;
+        }
+    }
+}
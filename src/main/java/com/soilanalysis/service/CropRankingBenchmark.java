@@ -0,0 +1,109 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilAnalysis.CropSuitability;
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.Season;
+import com.soilanalysis.model.SoilData.SoilType;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+// Compares building a CropSuitability for every crop against topCrops(k) on a synthetic catalogue.
+// Usage: CropRankingBenchmark [crops] [samples] [k]
+public class CropRankingBenchmark {
+    public static void main(String[] args) {
+        int cropCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int sampleCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Random random = new Random(42);
+        CropCatalogue catalogue = new CropCatalogue(syntheticCrops(cropCount, random));
+        SoilAnalyzerService analyzer = new SoilAnalyzerService(ForkJoinPool.commonPool(), catalogue);
+        SoilData[] samples = new SoilData[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            SoilData sample = new SoilData();
+            sample.setPh(4.0 + random.nextDouble() * 5.0);
+            sample.setNitrogen(random.nextDouble() * 150);
+            sample.setPhosphorus(random.nextDouble() * 100);
+            sample.setPotassium(random.nextDouble() * 200);
+            sample.setSoilType(SoilType.values()[random.nextInt(SoilType.values().length)]);
+            samples[i] = sample;
+        }
+
+        System.out.printf("%d crops, %d samples, k=%d%n", cropCount, sampleCount, k);
+        System.out.printf("%-12s %14s %14s%n", "mode", "us/sample", "bytes/sample");
+        for (int round = 0; round < 5; round++) {
+            // Early rounds warm the JIT; the last one is the one to read
+            boolean print = round == 4;
+            measure("all crops", print, sampleCount, () -> {
+                for (SoilData sample : samples) {
+                    materializeAll(analyzer, sample);
+                }
+            });
+            measure("top " + k, print, sampleCount, () -> {
+                for (SoilData sample : samples) {
+                    analyzer.topCrops(sample, k);
+                }
+            });
+        }
+    }
+
+    // What analyzeCropSuitability does for each crop, kept here as the baseline
+    private static List<CropSuitability> materializeAll(SoilAnalyzerService analyzer, SoilData sample) {
+        CropCatalogue.Ranking ranking = analyzer.rankCrops(sample, false);
+        List<CropSuitability> all = new ArrayList<>(ranking.size());
+        for (int i = 0; i < ranking.size(); i++) {
+            CropSuitability suitability = new CropSuitability();
+            suitability.setCropName(ranking.getCrop(i).getName());
+            suitability.setSuitabilityScore(ranking.getScore(i));
+            all.add(suitability);
+        }
+        return all;
+    }
+
+    private static void measure(String mode, boolean print, int samples, Runnable work) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        work.run();
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        if (print) {
+            System.out.printf("%-12s %14.2f %14d%n", mode, elapsed / 1e3 / samples, bytes / samples);
+        }
+    }
+
+    private static List<CropCatalogue.Crop> syntheticCrops(int count, Random random) {
+        List<CropCatalogue.Crop> crops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double phMin = 4.5 + random.nextInt(25) / 10.0;
+            double phMax = phMin + 0.5 + random.nextInt(15) / 10.0;
+            double nitrogen = 10 + random.nextInt(8) * 10;
+            double phosphorus = 20 + random.nextInt(3) * 10;
+            double potassium = 40 + random.nextInt(3) * 20;
+            Set<SoilType> soils = EnumSet.noneOf(SoilType.class);
+            for (SoilType type : SoilType.values()) {
+                if (random.nextInt(3) == 0) {
+                    soils.add(type);
+                }
+            }
+            Set<Season> seasons = EnumSet.noneOf(Season.class);
+            for (Season season : Season.values()) {
+                if (random.nextBoolean()) {
+                    seasons.add(season);
+                }
+            }
+            crops.add(new CropCatalogue.Crop("Crop " + i, false,
+                phMin, phMax, phMin - 0.5, phMax + 0.5,
+                nitrogen, nitrogen * 2, phosphorus, phosphorus * 2, potassium, potassium * 2,
+                soils, seasons));
+        }
+        return crops;
+    }
+}
@@ -0,0 +1,185 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.SoilType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Crop suitability scores precomputed over quantized samples. Suitability
+ * is the mean of a pH score (10/7/4), the crop's N/P/K score, and a soil
+ * score (10 for a preferred soil, 7 otherwise).
+ *
+ * The pH range edges of all crops split the pH axis into buckets: below the
+ * first edge, on each edge, between two edges, above the last edge, and
+ * NaN. Every crop's pH score is constant inside a bucket, so it is stored
+ * as a byte per crop and bucket. Each of N, P and K falls in one of four
+ * tiers against a crop's ranges (optimal, within 30%, within 50%, outside).
+ * Crops that share ranges share a nutrient profile, so a sample's tiers
+ * are computed once per profile and combined into one of 64 keys.
+ *
+ * Suitability is then SCORES[(pH tier, nutrient key, soil preferred)], a
+ * table of 384 entries. The entries are computed with the same arithmetic,
+ * in the same order, as the per-crop formulas they replace.
+ */
+public final class CropSuitabilityMatrix {
+    private static final int NUTRIENT_TIERS = 4;
+    private static final int NUTRIENT_KEYS = NUTRIENT_TIERS * NUTRIENT_TIERS * NUTRIENT_TIERS;
+    private static final double[] NUTRIENT_TIER_SCORES = {10.0, 7.0, 4.0, 1.0};
+    private static final double[] PH_TIER_SCORES = {10.0, 7.0, 4.0};
+    private static final SoilType[] SOIL_TYPES = SoilType.values();
+    // Soil type ordinals, plus one slot for a sample without a soil type
+    static final int NO_SOIL_TYPE = SOIL_TYPES.length;
+
+    // Indexed by scoreIndex(); RANKS orders the same entries, 0 = best, equal scores share a rank
+    private static final double[] SCORES = new double[PH_TIER_SCORES.length * NUTRIENT_KEYS * 2];
+    private static final int[] RANKS = new int[SCORES.length];
+
+    static {
+        for (int ph = 0; ph < PH_TIER_SCORES.length; ph++) {
+            for (int key = 0; key < NUTRIENT_KEYS; key++) {
+                double nutrients = 0.0;
+                nutrients += NUTRIENT_TIER_SCORES[key / (NUTRIENT_TIERS * NUTRIENT_TIERS)];
+                nutrients += NUTRIENT_TIER_SCORES[(key / NUTRIENT_TIERS) % NUTRIENT_TIERS];
+                nutrients += NUTRIENT_TIER_SCORES[key % NUTRIENT_TIERS];
+                nutrients = nutrients / 3;
+                for (int preferred = 0; preferred < 2; preferred++) {
+                    double score = 0.0;
+                    score += PH_TIER_SCORES[ph];
+                    score += nutrients;
+                    score += preferred == 1 ? 10.0 : 7.0;
+                    SCORES[(ph * NUTRIENT_KEYS + key) * 2 + preferred] = score / 3;
+                }
+            }
+        }
+        double[] distinct = Arrays.stream(SCORES).distinct().sorted().toArray();
+        for (int i = 0; i < SCORES.length; i++) {
+            RANKS[i] = distinct.length - 1 - Arrays.binarySearch(distinct, SCORES[i]);
+        }
+    }
+
+    private final int crops;
+    private final double[] phEdges;
+    private final int phBuckets;
+    // [crop * phBuckets + bucket] -> index into PH_TIER_SCORES
+    private final byte[] phTiers;
+    // Bit s set when the crop prefers soil slot s
+    private final int[] preferredSoils;
+    private final int[] nutrientProfiles;
+    // Per profile: nitrogen, phosphorus, potassium {min, max}
+    private final double[][] profileRanges;
+
+    public CropSuitabilityMatrix(List<CropCatalogue.Crop> crops) {
+        this.crops = crops.size();
+
+        double[] edges = new double[crops.size() * 4];
+        int e = 0;
+        for (CropCatalogue.Crop crop : crops) {
+            edges[e++] = crop.getPhMin();
+            edges[e++] = crop.getPhMax();
+            edges[e++] = crop.getPhLow();
+            edges[e++] = crop.getPhHigh();
+        }
+        this.phEdges = Arrays.stream(edges).distinct().sorted().toArray();
+        // Below, on and between edges, above, then NaN
+        this.phBuckets = 2 * phEdges.length + 2;
+
+        this.phTiers = new byte[crops.size() * phBuckets];
+        this.preferredSoils = new int[crops.size()];
+        this.nutrientProfiles = new int[crops.size()];
+        Map<List<Double>, Integer> profiles = new HashMap<>();
+        for (int id = 0; id < crops.size(); id++) {
+            CropCatalogue.Crop crop = crops.get(id);
+            for (int bucket = 0; bucket < phBuckets; bucket++) {
+                phTiers[id * phBuckets + bucket] = (byte) crop.phTier(representativePh(bucket));
+            }
+            for (SoilType type : crop.getPreferredSoils()) {
+                preferredSoils[id] |= 1 << type.ordinal();
+            }
+            List<Double> ranges = List.of(crop.getNitrogenMin(), crop.getNitrogenMax(),
+                crop.getPhosphorusMin(), crop.getPhosphorusMax(), crop.getPotassiumMin(), crop.getPotassiumMax());
+            nutrientProfiles[id] = profiles.computeIfAbsent(ranges, r -> profiles.size());
+        }
+        this.profileRanges = new double[profiles.size()][];
+        for (Map.Entry<List<Double>, Integer> profile : profiles.entrySet()) {
+            profileRanges[profile.getValue()] = profile.getKey().stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    public int size() { return crops; }
+
+    // Length of the array quantize() fills
+    public int keyLength() { return 2 + profileRanges.length; }
+
+    /*
+     * Quantizes a sample once for scoring against every crop: soil slot, pH
+     * bucket, then one nutrient key per nutrient profile.
+     */
+    public int[] quantize(SoilData data, int[] into) {
+        into[0] = data.getSoilType() != null ? data.getSoilType().ordinal() : NO_SOIL_TYPE;
+        into[1] = phBucket(data.getPh());
+        for (int p = 0; p < profileRanges.length; p++) {
+            double[] r = profileRanges[p];
+            into[2 + p] = (nutrientTier(data.getNitrogen(), r[0], r[1]) * NUTRIENT_TIERS
+                + nutrientTier(data.getPhosphorus(), r[2], r[3])) * NUTRIENT_TIERS
+                + nutrientTier(data.getPotassium(), r[4], r[5]);
+        }
+        return into;
+    }
+
+    public int scoreIndex(int crop, int[] key) {
+        int ph = phTiers[crop * phBuckets + key[1]];
+        int preferred = (preferredSoils[crop] >>> key[0]) & 1;
+        return (ph * NUTRIENT_KEYS + key[2 + nutrientProfiles[crop]]) * 2 + preferred;
+    }
+
+    public double score(int crop, int[] key) {
+        return SCORES[scoreIndex(crop, key)];
+    }
+
+    public static double scoreAt(int scoreIndex) { return SCORES[scoreIndex]; }
+
+    // Dense rank of a score, 0 for the best possible suitability
+    public static int rankAt(int scoreIndex) { return RANKS[scoreIndex]; }
+
+    private int phBucket(double ph) {
+        if (ph != ph) {
+            return phBuckets - 1;
+        }
+        int at = Arrays.binarySearch(phEdges, ph);
+        // Found: 2 * index + 1; missing: 2 * insertion point
+        return at >= 0 ? 2 * at + 1 : 2 * (-at - 1);
+    }
+
+    private double representativePh(int bucket) {
+        if (bucket == phBuckets - 1) {
+            return Double.NaN;
+        }
+        if (bucket % 2 == 1) {
+            return phEdges[bucket / 2];
+        }
+        int above = bucket / 2;
+        if (above == 0) {
+            return phEdges[0] - 1.0;
+        }
+        if (above == phEdges.length) {
+            return phEdges[phEdges.length - 1] + 1.0;
+        }
+        return (phEdges[above - 1] + phEdges[above]) / 2;
+    }
+
+    // 0 inside [min, max], 1 within [0.7 min, 1.3 max], 2 within [0.5 min, 1.5 max], else 3
+    static int nutrientTier(double value, double min, double max) {
+        if (value >= min && value <= max) {
+            return 0;
+        } else if (value >= min * 0.7 && value <= max * 1.3) {
+            return 1;
+        } else if (value >= min * 0.5 && value <= max * 1.5) {
+            return 2;
+        }
+        return 3;
+    }
+}
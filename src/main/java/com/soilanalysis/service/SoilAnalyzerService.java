@@ -1,5 +1,7 @@
 package com.soilanalysis.service;
 
+import com.soilanalysis.model.CompactSoilAnalysis;
+import com.soilanalysis.model.MultiSeasonAnalysis;
 import com.soilanalysis.model.SoilData;
 import com.soilanalysis.model.SoilAnalysis;
 import com.soilanalysis.model.SoilAnalysis.FertilizerRecommendation;
@@ -7,9 +9,23 @@ import com.soilanalysis.model.SoilAnalysis.CropSuitability;
 import com.soilanalysis.model.SoilAnalysis.EnvironmentalImpact;
 import com.soilanalysis.model.SoilData.SoilType;
 import com.soilanalysis.model.SoilData.Season;
-
-import java.util.Arrays;
+import com.soilanalysis.rules.RuleEngine;
+import com.soilanalysis.rules.RuleSet;
+import com.soilanalysis.scoring.ScoreProfile;
+import com.soilanalysis.scoring.ScoringKernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 public class SoilAnalyzerService {
     
@@ -41,64 +57,302 @@ public class SoilAnalyzerService {
     private static final double OPTIMAL_TEMPERATURE_MIN = 15.0;
     private static final double OPTIMAL_TEMPERATURE_MAX = 25.0;
 
+    // Smallest slice of a batch worth handing to another fork-join worker
+    private static final int MIN_BATCH_SLICE = 64;
+
+    // Constant results are shared, immutable instances referenced by every analysis that needs them
+    private static final FertilizerRecommendation IRON_CHELATE = FertilizerRecommendation.shared("Iron Chelate",
+        "1-2 oz per 1000 sq ft",
+        "Every 4-6 weeks during growing season",
+        "Corrects iron deficiency",
+        "Apply as foliar spray for quick results",
+        FertilizerRecommendation.Priority.MEDIUM);
+    private static final FertilizerRecommendation ZINC_SULFATE = FertilizerRecommendation.shared("Zinc Sulfate",
+        "1-2 lbs per 1000 sq ft",
+        "Once per year",
+        "Corrects zinc deficiency",
+        "Best applied in early spring",
+        FertilizerRecommendation.Priority.MEDIUM);
+
+    private static final EnvironmentalImpact NUTRIENT_RUNOFF = EnvironmentalImpact.shared("Nutrient Runoff",
+        "High nitrogen levels may lead to water pollution",
+        "Moderate",
+        List.of("Implement controlled-release fertilizers",
+                "Use cover crops to reduce nutrient leaching"),
+        "Reduced water quality if not managed");
+    private static final EnvironmentalImpact SOIL_EROSION = EnvironmentalImpact.shared("Soil Erosion",
+        "Low organic matter may increase soil erosion risk",
+        "High",
+        List.of("Add organic matter through composting",
+                "Implement conservation tillage"),
+        "Improved soil structure and reduced erosion");
+
+    // Indexed by the bit position of each CompactSoilAnalysis improvement area
+    private static final String[] IMPROVEMENT_AREAS = {
+        "Soil pH needs adjustment",
+        "Nitrogen levels are low",
+        "Phosphorus levels are low",
+        "Potassium levels are low",
+        "Organic matter content needs improvement",
+        "Soil moisture levels are low"
+    };
+
+    // The four season entries, alone or with one of the CURRENT_SEASON notes
+    private static final Map<String, String> SEASONAL = seasonal(null);
+    private static final Map<String, String> SEASONAL_COLD_SPRING = seasonal(
+        "Wait for soil to warm up before planting. Consider using row covers.");
+    private static final Map<String, String> SEASONAL_DRY_SUMMER = seasonal(
+        "Implement irrigation schedule to maintain soil moisture.");
+
+    // Shared recommendations for the analyzer rules, rebuilt when the rule file is reloaded
+    private static volatile RuleRecommendations ruleRecommendations;
+
+    private final ForkJoinPool batchPool;
+    private final CropCatalogue crops;
+    // Catalogue ids of the crops with hand-written details, -1 if the catalogue lacks them
+    private final int cornCrop;
+    private final int wheatCrop;
+
+    public SoilAnalyzerService() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SoilAnalyzerService(ForkJoinPool batchPool) {
+        this(batchPool, CropCatalogue.getDefault());
+    }
+
+    public SoilAnalyzerService(ForkJoinPool batchPool, CropCatalogue crops) {
+        this.batchPool = batchPool;
+        this.crops = crops;
+        this.cornCrop = crops.cropId("Corn");
+        this.wheatCrop = crops.cropId("Wheat");
+    }
+
+    public BatchAnalysisResult<SoilAnalysis> analyzeAll(Collection<SoilData> samples) {
+        return runBatch(samples, this::analyzeSoil);
+    }
+
+    @SuppressWarnings("unchecked")
+    <R> BatchAnalysisResult<R> runBatch(Collection<SoilData> samples, Function<SoilData, R> analyzer) {
+        SoilData[] input = samples.toArray(new SoilData[0]);
+        R[] results = (R[]) new Object[input.length];
+        RuntimeException[] failures = new RuntimeException[input.length];
+
+        // Aim for a few slices per worker so uneven samples still balance out
+        int slice = Math.max(MIN_BATCH_SLICE, input.length / (batchPool.getParallelism() * 4));
+
+        long start = System.nanoTime();
+        if (input.length > 0) {
+            batchPool.invoke(new BatchTask<>(input, results, failures, analyzer, 0, input.length, slice));
+        }
+        return new BatchAnalysisResult<>(results, failures, System.nanoTime() - start);
+    }
+
+    private static class BatchTask<R> extends RecursiveAction {
+        private final SoilData[] input;
+        private final R[] results;
+        private final RuntimeException[] failures;
+        private final Function<SoilData, R> analyzer;
+        private final int from;
+        private final int to;
+        private final int slice;
+
+        BatchTask(SoilData[] input, R[] results, RuntimeException[] failures,
+                  Function<SoilData, R> analyzer, int from, int to, int slice) {
+            this.input = input;
+            this.results = results;
+            this.failures = failures;
+            this.analyzer = analyzer;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= slice) {
+                for (int i = from; i < to; i++) {
+                    // A bad sample only fails its own slot, never the whole batch
+                    try {
+                        results[i] = analyzer.apply(input[i]);
+                    } catch (RuntimeException e) {
+                        failures[i] = e;
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask<>(input, results, failures, analyzer, from, mid, slice),
+                      new BatchTask<>(input, results, failures, analyzer, mid, to, slice));
+        }
+    }
+
     public SoilAnalysis analyzeSoil(SoilData soilData) {
+        return expand(analyzeCompact(soilData));
+    }
+
+    /*
+     * Everything analyzeSoil() decides about a sample, kept as a score and
+     * bitmasks. Nothing but the result itself is retained, so bulk runs can
+     * hold millions of these; expand() builds the full analysis on demand.
+     */
+    public CompactSoilAnalysis analyzeCompact(SoilData soilData) {
+        double healthScore = healthScore(soilData);
+        RuleSet rules = RuleEngine.get(RuleEngine.ANALYZER);
+        long fired = rules.evaluate(ruleInputs(soilData, healthScore));
+
+        Season season = season(soilData);
+        int flags = identifyImprovementAreas(soilData)
+            | analyzeMicronutrients(soilData)
+            | analyzeEnvironmentalImpact(soilData)
+            | currentSeason(soilData, season);
+        return new CompactSoilAnalysis(soilData, season, healthScore, fired, recommendationsFor(rules), flags);
+    }
+
+    /*
+     * Analyzes a sample for every season without touching its season field.
+     * Only the seasonal recommendations depend on the season (see
+     * AnalysisStage), so everything else is computed once and shared by the
+     * four per-season results. Each result keeps the caller's sample and
+     * records its own season in getSeason(); expand() hands the analysis a
+     * copy of the sample set to that season.
+     */
+    public MultiSeasonAnalysis analyzeSeasons(SoilData soilData) {
+        CompactSoilAnalysis base = analyzeCompact(soilData);
+        int seasonIndependent = base.getFlags() & ~(CompactSoilAnalysis.COLD_SPRING | CompactSoilAnalysis.DRY_SUMMER);
+        Map<Season, CompactSoilAnalysis> seasons = new EnumMap<>(Season.class);
+        Map<Season, Map<String, String>> recommendations = new EnumMap<>(Season.class);
+        for (Season season : Season.values()) {
+            int flags = seasonIndependent | currentSeason(soilData, season);
+            seasons.put(season, new CompactSoilAnalysis(soilData, season, base.getHealthScore(),
+                base.getFiredRules(), base.getRuleRecommendations(), flags));
+            recommendations.put(season, seasonalRecommendations(flags));
+        }
+        return new MultiSeasonAnalysis(seasons, recommendations);
+    }
+
+    public BatchAnalysisResult<CompactSoilAnalysis> analyzeAllCompact(Collection<SoilData> samples) {
+        return runBatch(samples, this::analyzeCompact);
+    }
+
+    // The full analysis a compact one stands for, the same as analyzeSoil() on its sample
+    public SoilAnalysis expand(CompactSoilAnalysis compact) {
         SoilAnalysis analysis = new SoilAnalysis();
+        SoilData soilData = compact.getSoilData();
+        if (compact.getSeason() != null && !compact.getSeason().name().equals(soilData.getSeason())) {
+            soilData = soilData.withSeason(compact.getSeason().name());
+        }
         analysis.setSoilData(soilData);
-        
-        // Calculate health score using the new method
-        analysis.calculateHealthScore();
-        
-        // Generate recommendations
-        generateRecommendations(analysis);
-        
-        // Generate overall assessment
-        analysis.setOverallAssessment(generateOverallAssessment(analysis.getHealthScore()));
-        
-        // Identify improvement areas
-        identifyImprovementAreas(analysis);
-        
-        // Analyze micronutrients
-        analyzeMicronutrients(analysis);
-        
-        // Analyze crop suitability
+        analysis.setHealthScore(compact.getHealthScore());
+        addRecommendations(analysis, compact.getFiredRules(), compact.getRuleRecommendations(), compact.getFlags());
+        analysis.setOverallAssessment(generateOverallAssessment(compact.getHealthScore()));
+        addImprovementAreas(analysis, compact.getFlags());
+        addNutrientScores(analysis);
         analyzeCropSuitability(analysis);
-        
-        // Analyze environmental impact
-        analyzeEnvironmentalImpact(analysis);
-        
-        // Generate seasonal recommendations
-        generateSeasonalRecommendations(analysis);
-        
+        addEnvironmentalImpacts(analysis, compact.getFlags());
+        analysis.setSeasonalRecommendations(seasonalRecommendations(compact.getFlags()));
         return analysis;
     }
 
-    private double calculateHealthScore(SoilData soilData) {
-        double phScore = calculatePhScore(soilData.getPh());
-        double nitrogenScore = calculateNutrientScore(soilData.getNitrogen(), OPTIMAL_NITROGEN_MIN, OPTIMAL_NITROGEN_MAX);
-        double phosphorusScore = calculateNutrientScore(soilData.getPhosphorus(), OPTIMAL_PHOSPHORUS_MIN, OPTIMAL_PHOSPHORUS_MAX);
-        double potassiumScore = calculateNutrientScore(soilData.getPotassium(), OPTIMAL_POTASSIUM_MIN, OPTIMAL_POTASSIUM_MAX);
-        double organicMatterScore = calculateNutrientScore(soilData.getOrganicMatter(), OPTIMAL_ORGANIC_MATTER_MIN, OPTIMAL_ORGANIC_MATTER_MAX);
-        double moistureScore = calculateNutrientScore(soilData.getMoisture(), OPTIMAL_MOISTURE_MIN, OPTIMAL_MOISTURE_MAX);
+    /*
+     * Brings an analysis up to date after the given fields of its sample
+     * were corrected, recomputing only the stages that read them or an
+     * updated earlier stage. A health score that comes out unchanged does
+     * not dirty the stages built on it. The analysis is updated in place
+     * and returned.
+     */
+    public SoilAnalysis updateAnalysis(SoilAnalysis previous, Set<SoilData.Field> changedFields) {
+        Set<AnalysisStage> updated = EnumSet.noneOf(AnalysisStage.class);
+        for (AnalysisStage stage : AnalysisStage.values()) {
+            if ((stage.readsAny(changedFields) || stage.dependsOnAny(updated)) && recompute(previous, stage)) {
+                updated.add(stage);
+            }
+        }
+        return previous;
+    }
 
-        // Weighted average of all scores
-        return (phScore * 0.2 +
-                nitrogenScore * 0.2 +
-                phosphorusScore * 0.15 +
-                potassiumScore * 0.15 +
-                organicMatterScore * 0.2 +
-                moistureScore * 0.1);
+    // Returns whether the stage's result may have changed
+    private boolean recompute(SoilAnalysis analysis, AnalysisStage stage) {
+        SoilData soilData = analysis.getSoilData();
+        switch (stage) {
+            case HEALTH_SCORE:
+                double previousScore = analysis.getHealthScore();
+                analysis.setHealthScore(healthScore(soilData));
+                return Double.compare(previousScore, analysis.getHealthScore()) != 0;
+            case OVERALL_ASSESSMENT:
+                analysis.setOverallAssessment(generateOverallAssessment(analysis.getHealthScore()));
+                return true;
+            case RECOMMENDATIONS:
+                RuleSet rules = RuleEngine.get(RuleEngine.ANALYZER);
+                analysis.setRecommendations(new ArrayList<>());
+                addRecommendations(analysis, rules.evaluate(ruleInputs(soilData, analysis.getHealthScore())),
+                    recommendationsFor(rules), analyzeMicronutrients(soilData));
+                return true;
+            case IMPROVEMENT_AREAS:
+                analysis.setImprovementAreas(new ArrayList<>());
+                addImprovementAreas(analysis, identifyImprovementAreas(soilData));
+                return true;
+            case NUTRIENT_SCORES:
+                analysis.setNutrientScores(new HashMap<>());
+                addNutrientScores(analysis);
+                return true;
+            case CROP_SUITABILITY:
+                analysis.setCropSuitability(new ArrayList<>());
+                analyzeCropSuitability(analysis);
+                return true;
+            case ENVIRONMENTAL_IMPACTS:
+                analysis.setEnvironmentalImpacts(new ArrayList<>());
+                addEnvironmentalImpacts(analysis, analyzeEnvironmentalImpact(soilData));
+                return true;
+            case SEASONAL_RECOMMENDATIONS:
+                analysis.setSeasonalRecommendations(seasonalRecommendations(currentSeason(soilData)));
+                return true;
+            default:
+                throw new IllegalStateException("Unknown analysis stage " + stage);
+        }
     }
 
-    private double calculatePhScore(double ph) {
-        if (ph >= OPTIMAL_PH_MIN && ph <= OPTIMAL_PH_MAX) {
-            return 10.0;
-        } else if (ph >= 5.5 && ph <= 7.5) {
-            return 7.0;
-        } else if (ph >= 5.0 && ph <= 8.0) {
-            return 4.0;
-        } else {
-            return 1.0;
+    private static double healthScore(SoilData soilData) {
+        return ScoringKernel.score(ScoreProfile.SOIL_HEALTH,
+            ScoringKernel.sample(soilData, new double[ScoreProfile.INPUT_COUNT]));
+    }
+
+    // Fired rules come back in rule file order, micronutrient products follow them
+    private static void addRecommendations(SoilAnalysis analysis, long fired,
+                                           List<FertilizerRecommendation> ruleRecommendations, int flags) {
+        for (; fired != 0; fired &= fired - 1) {
+            analysis.addRecommendation(ruleRecommendations.get(Long.numberOfTrailingZeros(fired)));
+        }
+        if ((flags & CompactSoilAnalysis.IRON_CHELATE) != 0) {
+            analysis.addRecommendation(IRON_CHELATE);
+        }
+        if ((flags & CompactSoilAnalysis.ZINC_SULFATE) != 0) {
+            analysis.addRecommendation(ZINC_SULFATE);
+        }
+    }
+
+    private static void addImprovementAreas(SoilAnalysis analysis, int flags) {
+        for (int areas = flags & CompactSoilAnalysis.IMPROVEMENT_AREAS; areas != 0; areas &= areas - 1) {
+            analysis.addImprovementArea(IMPROVEMENT_AREAS[Integer.numberOfTrailingZeros(areas)]);
+        }
+    }
+
+    private static void addEnvironmentalImpacts(SoilAnalysis analysis, int flags) {
+        if ((flags & CompactSoilAnalysis.NUTRIENT_RUNOFF) != 0) {
+            analysis.addEnvironmentalImpact(NUTRIENT_RUNOFF);
         }
+        if ((flags & CompactSoilAnalysis.SOIL_EROSION) != 0) {
+            analysis.addEnvironmentalImpact(SOIL_EROSION);
+        }
+    }
+
+    private static Map<String, String> seasonalRecommendations(int flags) {
+        if ((flags & CompactSoilAnalysis.COLD_SPRING) != 0) {
+            return SEASONAL_COLD_SPRING;
+        } else if ((flags & CompactSoilAnalysis.DRY_SUMMER) != 0) {
+            return SEASONAL_DRY_SUMMER;
+        }
+        return SEASONAL;
     }
 
     private double calculateNutrientScore(double value, double min, double max) {
@@ -113,108 +367,47 @@ public class SoilAnalyzerService {
         }
     }
 
-    private void generateRecommendations(SoilAnalysis analysis) {
-        SoilData soilData = analysis.getSoilData();
-        
-        // pH recommendations
-        if (soilData.getPh() < 5.5) {
-            addRecommendation(analysis, "Agricultural Lime", 
-                "50-100 lbs per 1000 sq ft", 
-                "Once per season",
-                "Raises soil pH to reduce acidity",
-                "Apply evenly and water thoroughly",
-                FertilizerRecommendation.Priority.HIGH);
-        } else if (soilData.getPh() > 7.5) {
-            addRecommendation(analysis, "Sulfur",
-                "10-20 lbs per 1000 sq ft",
-                "Once per season",
-                "Lowers soil pH to reduce alkalinity",
-                "May take several months to see full effect",
-                FertilizerRecommendation.Priority.HIGH);
-        }
-
-        // Nitrogen recommendations
-        if (soilData.getNitrogen() < OPTIMAL_NITROGEN_MIN) {
-            addRecommendation(analysis, "Nitrogen-rich Fertilizer",
-                "1-2 lbs per 1000 sq ft",
-                "Every 4-6 weeks during growing season",
-                "Promotes leaf growth and green color",
-                "Water thoroughly after application to prevent burning",
-                FertilizerRecommendation.Priority.HIGH);
-        }
+    private static double[] ruleInputs(SoilData soilData, double healthScore) {
+        double[] inputs = RuleSet.newInputs();
+        inputs[RuleSet.Input.PH.ordinal()] = soilData.getPh();
+        inputs[RuleSet.Input.NITROGEN.ordinal()] = soilData.getNitrogen();
+        inputs[RuleSet.Input.PHOSPHORUS.ordinal()] = soilData.getPhosphorus();
+        inputs[RuleSet.Input.POTASSIUM.ordinal()] = soilData.getPotassium();
+        inputs[RuleSet.Input.ORGANIC_MATTER.ordinal()] = soilData.getOrganicMatter();
+        inputs[RuleSet.Input.MOISTURE.ordinal()] = soilData.getMoisture();
+        inputs[RuleSet.Input.SOIL_TYPE.ordinal()] = RuleSet.soilType(soilData.getSoilType());
+        inputs[RuleSet.Input.HEALTH_SCORE.ordinal()] = healthScore;
+        return inputs;
+    }
 
-        // Phosphorus recommendations
-        if (soilData.getPhosphorus() < OPTIMAL_PHOSPHORUS_MIN) {
-            addRecommendation(analysis, "Phosphate Fertilizer",
-                "2-3 lbs per 1000 sq ft",
-                "Every 8-10 weeks",
-                "Promotes root development and flowering",
-                "Work into soil rather than surface application for best results",
-                FertilizerRecommendation.Priority.MEDIUM);
+    private static List<FertilizerRecommendation> recommendationsFor(RuleSet rules) {
+        RuleRecommendations current = ruleRecommendations;
+        if (current == null || current.rules != rules) {
+            // Racing threads may both build; either result is equivalent
+            current = new RuleRecommendations(rules);
+            ruleRecommendations = current;
         }
+        return current.recommendations;
+    }
 
-        // Potassium recommendations
-        if (soilData.getPotassium() < OPTIMAL_POTASSIUM_MIN) {
-            addRecommendation(analysis, "Potassium-rich Fertilizer",
-                "1-2 lbs per 1000 sq ft",
-                "Every 6-8 weeks",
-                "Improves overall plant vigor and disease resistance",
-                "Particularly important for fruit and root development",
-                FertilizerRecommendation.Priority.MEDIUM);
+    private static final class RuleRecommendations {
+        final RuleSet rules;
+        final List<FertilizerRecommendation> recommendations;
+
+        RuleRecommendations(RuleSet rules) {
+            FertilizerRecommendation[] shared = new FertilizerRecommendation[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                RuleSet.Action action = rules.getAction(i);
+                shared[i] = FertilizerRecommendation.shared(action.getName(),
+                    action.getAmount(),
+                    action.getFrequency(),
+                    action.getBenefits(),
+                    action.getNotes(),
+                    FertilizerRecommendation.Priority.valueOf(action.getPriority()));
+            }
+            this.rules = rules;
+            this.recommendations = List.of(shared);
         }
-
-        // Organic matter recommendations
-        if (soilData.getOrganicMatter() < OPTIMAL_ORGANIC_MATTER_MIN) {
-            addRecommendation(analysis, "Compost",
-                "1-2 inches layer",
-                "Twice per year",
-                "Improves soil structure, water retention, and nutrient availability",
-                "Work into top 4-6 inches of soil if possible",
-                FertilizerRecommendation.Priority.HIGH);
-        }
-
-        // Soil type specific recommendations
-        switch(soilData.getSoilType()) {
-            case CLAY:
-                addRecommendation(analysis, "Gypsum",
-                    "40 lbs per 1000 sq ft",
-                    "Once per year",
-                    "Improves clay soil structure and drainage",
-                    "Best applied in fall or early spring",
-                    FertilizerRecommendation.Priority.MEDIUM);
-                break;
-            case SANDY:
-                addRecommendation(analysis, "Organic Mulch",
-                    "3-4 inch layer",
-                    "Twice per year",
-                    "Improves water retention in sandy soils",
-                    "Reapply as it breaks down",
-                    FertilizerRecommendation.Priority.MEDIUM);
-                break;
-        }
-
-        // Maintenance recommendation for healthy soil
-        if (analysis.getHealthScore() > 7.0) {
-            addRecommendation(analysis, "Balanced Fertilizer (10-10-10)",
-                "1 lb per 1000 sq ft",
-                "Every 8-10 weeks during growing season",
-                "Maintains overall soil fertility",
-                "Reduce frequency for native plants",
-                FertilizerRecommendation.Priority.LOW);
-        }
-    }
-
-    private void addRecommendation(SoilAnalysis analysis, String name, String amount,
-                                 String frequency, String benefits, String notes,
-                                 FertilizerRecommendation.Priority priority) {
-        FertilizerRecommendation recommendation = new FertilizerRecommendation();
-        recommendation.setName(name);
-        recommendation.setAmount(amount);
-        recommendation.setFrequency(frequency);
-        recommendation.setBenefits(benefits);
-        recommendation.setNotes(notes);
-        recommendation.setPriority(priority);
-        analysis.addRecommendation(recommendation);
     }
 
     private String generateOverallAssessment(double healthScore) {
@@ -229,69 +422,60 @@ public class SoilAnalyzerService {
         }
     }
 
-    private void identifyImprovementAreas(SoilAnalysis analysis) {
-        SoilData soilData = analysis.getSoilData();
-        
+    private int identifyImprovementAreas(SoilData soilData) {
+        int areas = 0;
         if (soilData.getPh() < OPTIMAL_PH_MIN || soilData.getPh() > OPTIMAL_PH_MAX) {
-            analysis.addImprovementArea("Soil pH needs adjustment");
+            areas |= CompactSoilAnalysis.PH_ADJUSTMENT;
         }
         if (soilData.getNitrogen() < OPTIMAL_NITROGEN_MIN) {
-            analysis.addImprovementArea("Nitrogen levels are low");
+            areas |= CompactSoilAnalysis.LOW_NITROGEN;
         }
         if (soilData.getPhosphorus() < OPTIMAL_PHOSPHORUS_MIN) {
-            analysis.addImprovementArea("Phosphorus levels are low");
+            areas |= CompactSoilAnalysis.LOW_PHOSPHORUS;
         }
         if (soilData.getPotassium() < OPTIMAL_POTASSIUM_MIN) {
-            analysis.addImprovementArea("Potassium levels are low");
+            areas |= CompactSoilAnalysis.LOW_POTASSIUM;
         }
         if (soilData.getOrganicMatter() < OPTIMAL_ORGANIC_MATTER_MIN) {
-            analysis.addImprovementArea("Organic matter content needs improvement");
+            areas |= CompactSoilAnalysis.LOW_ORGANIC_MATTER;
         }
         if (soilData.getMoisture() < OPTIMAL_MOISTURE_MIN) {
-            analysis.addImprovementArea("Soil moisture levels are low");
+            areas |= CompactSoilAnalysis.LOW_MOISTURE;
         }
+        return areas;
     }
 
-    private void analyzeMicronutrients(SoilAnalysis analysis) {
+    private void addNutrientScores(SoilAnalysis analysis) {
         SoilData soilData = analysis.getSoilData();
-        
-        // Calculate and store nutrient scores
         analysis.addNutrientScore("Iron", calculateNutrientScore(soilData.getIron(), OPTIMAL_IRON_MIN, OPTIMAL_IRON_MAX));
         analysis.addNutrientScore("Zinc", calculateNutrientScore(soilData.getZinc(), OPTIMAL_ZINC_MIN, OPTIMAL_ZINC_MAX));
         analysis.addNutrientScore("Copper", calculateNutrientScore(soilData.getCopper(), OPTIMAL_COPPER_MIN, OPTIMAL_COPPER_MAX));
         analysis.addNutrientScore("Manganese", calculateNutrientScore(soilData.getManganese(), OPTIMAL_MANGANESE_MIN, OPTIMAL_MANGANESE_MAX));
+    }
 
-        // Add recommendations for deficient micronutrients
+    // Recommendations for deficient micronutrients
+    private int analyzeMicronutrients(SoilData soilData) {
+        int recommendations = 0;
         if (soilData.getIron() < OPTIMAL_IRON_MIN) {
-            addRecommendation(analysis, "Iron Chelate",
-                "1-2 oz per 1000 sq ft",
-                "Every 4-6 weeks during growing season",
-                "Corrects iron deficiency",
-                "Apply as foliar spray for quick results",
-                FertilizerRecommendation.Priority.MEDIUM);
+            recommendations |= CompactSoilAnalysis.IRON_CHELATE;
         }
-
         if (soilData.getZinc() < OPTIMAL_ZINC_MIN) {
-            addRecommendation(analysis, "Zinc Sulfate",
-                "1-2 lbs per 1000 sq ft",
-                "Once per year",
-                "Corrects zinc deficiency",
-                "Best applied in early spring",
-                FertilizerRecommendation.Priority.MEDIUM);
+            recommendations |= CompactSoilAnalysis.ZINC_SULFATE;
         }
+        return recommendations;
     }
 
     private void analyzeCropSuitability(SoilAnalysis analysis) {
         SoilData soilData = analysis.getSoilData();
-        List<String> commonCrops = Arrays.asList("Corn", "Wheat", "Soybeans", "Cotton", "Rice");
+        CropSuitabilityMatrix matrix = crops.getMatrix();
+        // Quantize the sample once; each crop's score is then a table read
+        int[] sampleKey = matrix.quantize(soilData, new int[matrix.keyLength()]);
 
-        for (String crop : commonCrops) {
+        // The sample's own crop list if it names known crops, otherwise the catalogue defaults
+        for (int crop : crops.resolve(soilData.getCropType())) {
             CropSuitability suitability = new CropSuitability();
-            suitability.setCropName(crop);
-            
-            // Calculate suitability score based on soil parameters
-            double suitabilityScore = calculateCropSuitabilityScore(soilData, crop);
-            suitability.setSuitabilityScore(suitabilityScore);
+            suitability.setCropName(crops.getCrop(crop).getName());
+            suitability.setSuitabilityScore(matrix.score(crop, sampleKey));
             
             // Add crop-specific advantages and challenges
             addCropSpecificDetails(suitability, soilData, crop);
@@ -300,147 +484,108 @@ public class SoilAnalyzerService {
         }
     }
 
-    private double calculateCropSuitabilityScore(SoilData soilData, String crop) {
-        double score = 0.0;
-        int factors = 0;
-
-        // pH suitability
-        double phScore = calculatePhSuitabilityForCrop(soilData.getPh(), crop);
-        score += phScore;
-        factors++;
-
-        // Nutrient suitability
-        double nutrientScore = calculateNutrientSuitabilityForCrop(soilData, crop);
-        score += nutrientScore;
-        factors++;
-
-        // Soil type suitability
-        double soilTypeScore = calculateSoilTypeSuitability(soilData.getSoilType(), crop);
-        score += soilTypeScore;
-        factors++;
-
-        return factors > 0 ? score / factors : 0.0;
-    }
-
-    private double calculatePhSuitabilityForCrop(double ph, String crop) {
-        // Crop-specific pH ranges
-        switch (crop.toLowerCase()) {
-            case "corn":
-                return (ph >= 5.8 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
-            case "wheat":
-                return (ph >= 6.0 && ph <= 7.5) ? 10.0 : (ph >= 5.5 && ph <= 8.0) ? 7.0 : 4.0;
-            case "soybeans":
-                return (ph >= 6.0 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
-            default:
-                return (ph >= 6.0 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
-        }
+    /*
+     * Ranks the whole crop catalogue for a sample, best first. Crops not
+     * planted in the sample's season (when it has one) are pruned, and with
+     * preferredSoilOnly so are crops that don't prefer its soil type.
+     */
+    public CropCatalogue.Ranking rankCrops(SoilData soilData, boolean preferredSoilOnly) {
+        Season season = soilData.getSeason() != null ? Season.valueOf(soilData.getSeason()) : null;
+        return crops.rank(soilData, season, preferredSoilOnly);
     }
 
-    private double calculateNutrientSuitabilityForCrop(SoilData soilData, String crop) {
-        double score = 0.0;
-        int factors = 0;
-
-        // Basic nutrient requirements
-        score += calculateNutrientScore(soilData.getNitrogen(), OPTIMAL_NITROGEN_MIN, OPTIMAL_NITROGEN_MAX);
-        score += calculateNutrientScore(soilData.getPhosphorus(), OPTIMAL_PHOSPHORUS_MIN, OPTIMAL_PHOSPHORUS_MAX);
-        score += calculateNutrientScore(soilData.getPotassium(), OPTIMAL_POTASSIUM_MIN, OPTIMAL_POTASSIUM_MAX);
-        factors += 3;
-
-        return factors > 0 ? score / factors : 0.0;
-    }
-
-    private double calculateSoilTypeSuitability(SoilType soilType, String crop) {
-        switch (crop.toLowerCase()) {
-            case "corn":
-                return (soilType == SoilType.LOAMY || soilType == SoilType.CLAY) ? 10.0 : 7.0;
-            case "wheat":
-                return (soilType == SoilType.LOAMY || soilType == SoilType.SILTY) ? 10.0 : 7.0;
-            case "soybeans":
-                return (soilType == SoilType.LOAMY || soilType == SoilType.SILTY) ? 10.0 : 7.0;
-            default:
-                return (soilType == SoilType.LOAMY) ? 10.0 : 7.0;
+    /*
+     * The k most suitable crops for the sample, best first, pruned by its
+     * season like rankCrops(). Only the winners are built as CropSuitability
+     * objects.
+     */
+    public List<CropSuitability> topCrops(SoilData soilData, int k) {
+        Season season = soilData.getSeason() != null ? Season.valueOf(soilData.getSeason()) : null;
+        CropCatalogue.Ranking top = crops.top(soilData, season, false, k);
+        List<CropSuitability> result = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            CropSuitability suitability = new CropSuitability();
+            suitability.setCropName(top.getCrop(i).getName());
+            suitability.setSuitabilityScore(top.getScore(i));
+            addCropSpecificDetails(suitability, soilData, top.getCropId(i));
+            result.add(suitability);
         }
+        return result;
     }
 
-    private void addCropSpecificDetails(CropSuitability suitability, SoilData soilData, String crop) {
-        switch (crop.toLowerCase()) {
-            case "corn":
-                suitability.getAdvantages().add("Good nitrogen levels for corn growth");
-                if (soilData.getPhosphorus() < OPTIMAL_PHOSPHORUS_MIN) {
-                    suitability.getChallenges().add("Phosphorus levels may limit root development");
-                }
-                suitability.setRecommendedVariety("Select based on local climate");
-                suitability.setPlantingSeason("Spring");
-                break;
-            case "wheat":
-                suitability.getAdvantages().add("Suitable pH range for wheat");
-                if (soilData.getPotassium() < OPTIMAL_POTASSIUM_MIN) {
-                    suitability.getChallenges().add("Potassium levels may affect grain quality");
-                }
-                suitability.setRecommendedVariety("Winter wheat varieties");
-                suitability.setPlantingSeason("Fall");
-                break;
-            // Add more crops as needed
+    private void addCropSpecificDetails(CropSuitability suitability, SoilData soilData, int crop) {
+        if (crop == cornCrop) {
+            suitability.getAdvantages().add("Good nitrogen levels for corn growth");
+            if (soilData.getPhosphorus() < OPTIMAL_PHOSPHORUS_MIN) {
+                suitability.getChallenges().add("Phosphorus levels may limit root development");
+            }
+            suitability.setRecommendedVariety("Select based on local climate");
+            suitability.setPlantingSeason("Spring");
+        } else if (crop == wheatCrop) {
+            suitability.getAdvantages().add("Suitable pH range for wheat");
+            if (soilData.getPotassium() < OPTIMAL_POTASSIUM_MIN) {
+                suitability.getChallenges().add("Potassium levels may affect grain quality");
+            }
+            suitability.setRecommendedVariety("Winter wheat varieties");
+            suitability.setPlantingSeason("Fall");
         }
+        // Add more crops as needed
     }
 
-    private void analyzeEnvironmentalImpact(SoilAnalysis analysis) {
-        SoilData soilData = analysis.getSoilData();
-        
+    private int analyzeEnvironmentalImpact(SoilData soilData) {
+        int impacts = 0;
         // Analyze potential environmental impacts
         if (soilData.getNitrogen() > OPTIMAL_NITROGEN_MAX) {
-            EnvironmentalImpact impact = new EnvironmentalImpact();
-            impact.setImpactType("Nutrient Runoff");
-            impact.setDescription("High nitrogen levels may lead to water pollution");
-            impact.setSeverity("Moderate");
-            impact.getMitigationStrategies().add("Implement controlled-release fertilizers");
-            impact.getMitigationStrategies().add("Use cover crops to reduce nutrient leaching");
-            impact.setLongTermEffect("Reduced water quality if not managed");
-            analysis.addEnvironmentalImpact(impact);
+            impacts |= CompactSoilAnalysis.NUTRIENT_RUNOFF;
         }
-
         if (soilData.getOrganicMatter() < OPTIMAL_ORGANIC_MATTER_MIN) {
-            EnvironmentalImpact impact = new EnvironmentalImpact();
-            impact.setImpactType("Soil Erosion");
-            impact.setDescription("Low organic matter may increase soil erosion risk");
-            impact.setSeverity("High");
-            impact.getMitigationStrategies().add("Add organic matter through composting");
-            impact.getMitigationStrategies().add("Implement conservation tillage");
-            impact.setLongTermEffect("Improved soil structure and reduced erosion");
-            analysis.addEnvironmentalImpact(impact);
+            impacts |= CompactSoilAnalysis.SOIL_EROSION;
         }
+        return impacts;
     }
 
-    private void generateSeasonalRecommendations(SoilAnalysis analysis) {
-        SoilData soilData = analysis.getSoilData();
-        
-        // Generate recommendations for each season
-        analysis.addSeasonalRecommendation("SPRING", 
-            "Prepare soil for planting. Apply balanced fertilizer and test soil temperature.");
-        analysis.addSeasonalRecommendation("SUMMER", 
-            "Monitor soil moisture and apply mulch to conserve water.");
-        analysis.addSeasonalRecommendation("AUTUMN", 
-            "Add organic matter and prepare soil for winter.");
-        analysis.addSeasonalRecommendation("WINTER", 
-            "Protect soil from erosion and plan for spring planting.");
+    // Season-specific note based on current conditions, if any
+    private int currentSeason(SoilData soilData) {
+        return currentSeason(soilData, season(soilData));
+    }
 
-        // Add season-specific recommendations based on current conditions
-        if (soilData.getSeason() != null) {
-            switch (Season.valueOf(soilData.getSeason())) {
+    private static Season season(SoilData soilData) {
+        return soilData.getSeason() != null ? Season.valueOf(soilData.getSeason()) : null;
+    }
+
+    private int currentSeason(SoilData soilData, Season season) {
+        if (season != null) {
+            switch (season) {
                 case SPRING:
                     if (soilData.getTemperature() < OPTIMAL_TEMPERATURE_MIN) {
-                        analysis.addSeasonalRecommendation("CURRENT_SEASON",
-                            "Wait for soil to warm up before planting. Consider using row covers.");
+                        return CompactSoilAnalysis.COLD_SPRING;
                     }
                     break;
                 case SUMMER:
                     if (soilData.getMoisture() < OPTIMAL_MOISTURE_MIN) {
-                        analysis.addSeasonalRecommendation("CURRENT_SEASON",
-                            "Implement irrigation schedule to maintain soil moisture.");
+                        return CompactSoilAnalysis.DRY_SUMMER;
                     }
                     break;
                 // Add more seasonal recommendations as needed
             }
         }
+        return 0;
+    }
+
+    // Built in the order the entries were always put, so iteration order is unchanged
+    private static Map<String, String> seasonal(String currentSeason) {
+        Map<String, String> recommendations = new HashMap<>();
+        recommendations.put("SPRING",
+            "Prepare soil for planting. Apply balanced fertilizer and test soil temperature.");
+        recommendations.put("SUMMER",
+            "Monitor soil moisture and apply mulch to conserve water.");
+        recommendations.put("AUTUMN",
+            "Add organic matter and prepare soil for winter.");
+        recommendations.put("WINTER",
+            "Protect soil from erosion and plan for spring planting.");
+        if (currentSeason != null) {
+            recommendations.put("CURRENT_SEASON", currentSeason);
+        }
+        return Collections.unmodifiableMap(recommendations);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.SoilType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+public class SoilDataParser {
+
+    // Column setters keyed by normalized header name ("Organic Matter", "organic_matter" -> "organicmatter")
+    private static final Map<String, BiConsumer<SoilData, String>> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("id", SoilData::setId);
+        COLUMNS.put("ph", (d, v) -> d.setPh(Double.parseDouble(v)));
+        COLUMNS.put("nitrogen", (d, v) -> d.setNitrogen(Double.parseDouble(v)));
+        COLUMNS.put("phosphorus", (d, v) -> d.setPhosphorus(Double.parseDouble(v)));
+        COLUMNS.put("potassium", (d, v) -> d.setPotassium(Double.parseDouble(v)));
+        COLUMNS.put("organicmatter", (d, v) -> d.setOrganicMatter(Double.parseDouble(v)));
+        COLUMNS.put("moisture", (d, v) -> d.setMoisture(Double.parseDouble(v)));
+        COLUMNS.put("temperature", (d, v) -> d.setTemperature(Double.parseDouble(v)));
+        COLUMNS.put("bulkdensity", (d, v) -> d.setBulkDensity(Double.parseDouble(v)));
+        COLUMNS.put("cationexchangecapacity", (d, v) -> d.setCationExchangeCapacity(Double.parseDouble(v)));
+        COLUMNS.put("cec", (d, v) -> d.setCationExchangeCapacity(Double.parseDouble(v)));
+        COLUMNS.put("soiltype", (d, v) -> d.setSoilType(SoilType.valueOf(v.toUpperCase(Locale.ROOT))));
+        COLUMNS.put("location", SoilData::setLocation);
+        COLUMNS.put("sampledepth", SoilData::setSampleDepth);
+        COLUMNS.put("croptype", SoilData::setCropType);
+        COLUMNS.put("season", (d, v) -> d.setSeason(v.toUpperCase(Locale.ROOT)));
+        COLUMNS.put("iron", (d, v) -> d.setIron(Double.parseDouble(v)));
+        COLUMNS.put("zinc", (d, v) -> d.setZinc(Double.parseDouble(v)));
+        COLUMNS.put("copper", (d, v) -> d.setCopper(Double.parseDouble(v)));
+        COLUMNS.put("manganese", (d, v) -> d.setManganese(Double.parseDouble(v)));
+        COLUMNS.put("sandpercentage", (d, v) -> d.setSandPercentage(Double.parseDouble(v)));
+        COLUMNS.put("siltpercentage", (d, v) -> d.setSiltPercentage(Double.parseDouble(v)));
+        COLUMNS.put("claypercentage", (d, v) -> d.setClayPercentage(Double.parseDouble(v)));
+    }
+
+    private final char delimiter;
+    private final List<BiConsumer<SoilData, String>> setters;
+
+    public SoilDataParser(String headerLine, char delimiter) {
+        this.delimiter = delimiter;
+        this.setters = new ArrayList<>();
+        for (String column : split(headerLine, delimiter)) {
+            // Unknown columns are kept as null so positions still line up
+            setters.add(COLUMNS.get(normalize(column)));
+        }
+    }
+
+    // Tab-separated if the header contains a tab, comma-separated otherwise
+    public static char detectDelimiter(String headerLine) {
+        return headerLine.indexOf('\t') >= 0 ? '\t' : ',';
+    }
+
+    public char getDelimiter() { return delimiter; }
+
+    public SoilData parse(String line) {
+        List<String> values = split(line, delimiter);
+        SoilData soilData = new SoilData();
+        for (int i = 0; i < values.size() && i < setters.size(); i++) {
+            BiConsumer<SoilData, String> setter = setters.get(i);
+            String value = values.get(i).trim();
+            if (setter == null || value.isEmpty()) {
+                continue;
+            }
+            try {
+                setter.accept(soilData, value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' in column " + (i + 1), e);
+            }
+        }
+        return soilData;
+    }
+
+    // Splits one record, honouring double-quoted fields and "" escapes
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String normalize(String column) {
+        StringBuilder sb = new StringBuilder(column.length());
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,423 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+ * Append-only archive of the numeric part of SoilData samples, kept off the
+ * heap in a memory-mapped file so years of field history don't load the
+ * garbage collector.
+ *
+ * The file starts with a 64-byte header holding the committed record count.
+ * Fixed 144-byte records follow: sample time (epoch seconds, UTC), location
+ * id, soil type, then the sixteen measurements in Field order. A record
+ * counts once the header count has moved past it. Dirty pages of a mapping
+ * reach the disk in no particular order, so append() only moves the count
+ * in memory: flush() forces the new records first and then writes and
+ * forces the header. After a crash the count never covers a record that
+ * did not make it to disk; appends since the last flush() or close() are
+ * lost and get overwritten. Location names are numbered in a .locations
+ * file beside the archive. Text fields other than location (id, depth,
+ * crop, season) are not archived.
+ *
+ * Records are read in place through SampleView, a reusable cursor over the
+ * mapped bytes. An in-memory index of (time, row) per location, sorted by
+ * time, is rebuilt on open and kept current by append().
+ */
+public class SoilSampleArchive implements AutoCloseable {
+    public enum Field {
+        PH, NITROGEN, PHOSPHORUS, POTASSIUM, ORGANIC_MATTER, MOISTURE,
+        TEMPERATURE, BULK_DENSITY, CATION_EXCHANGE_CAPACITY,
+        IRON, ZINC, COPPER, MANGANESE, SAND, SILT, CLAY
+    }
+
+    private static final int MAGIC = 0x534F494C; // "SOIL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+    private static final int TIME_OFFSET = 0;
+    private static final int LOCATION_OFFSET = 8;
+    private static final int SOIL_TYPE_OFFSET = 12;
+    private static final int FIELDS_OFFSET = 16;
+    public static final int RECORD_BYTES = FIELDS_OFFSET + Field.values().length * Double.BYTES;
+    // Records per mapped segment (about 36 MiB), so no record straddles two mappings
+    private static final int SEGMENT_RECORDS = 1 << 18;
+    private static final long SEGMENT_BYTES = (long) SEGMENT_RECORDS * RECORD_BYTES;
+    private static final SoilData.SoilType[] SOIL_TYPES = SoilData.SoilType.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long count;
+    // Records covered by the count on disk
+    private long flushedCount;
+
+    private final Path locationsPath;
+    private final DataOutputStream locationsOut;
+    private final List<String> locationNames = new ArrayList<>();
+    private final Map<String, Integer> locationIds = new HashMap<>();
+    private final List<LocationIndex> indexes = new ArrayList<>();
+
+    public SoilSampleArchive(Path path) throws IOException {
+        this.path = path;
+        this.locationsPath = path.resolveSibling(path.getFileName() + ".locations");
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (fresh) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, RECORD_BYTES);
+            header.putLong(COUNT_OFFSET, 0);
+            header.force();
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_BYTES) {
+            channel.close();
+            throw new IOException("Not a soil sample archive: " + path);
+        }
+        this.count = header.getLong(COUNT_OFFSET);
+        this.flushedCount = count;
+
+        loadLocations();
+        this.locationsOut = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(locationsPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        rebuildIndex();
+    }
+
+    private void loadLocations() throws IOException {
+        if (!Files.exists(locationsPath)) {
+            return;
+        }
+        try (InputStream file = Files.newInputStream(locationsPath);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                String name;
+                try {
+                    name = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                locationIds.put(name, locationNames.size());
+                locationNames.add(name);
+                indexes.add(new LocationIndex());
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        long n = count;
+        for (long row = 0; row < n; row++) {
+            MappedByteBuffer segment = segment(row);
+            int offset = offsetInSegment(row);
+            int location = segment.getInt(offset + LOCATION_OFFSET);
+            if (location >= 0 && location < indexes.size()) {
+                indexes.get(location).add(segment.getLong(offset + TIME_OFFSET), row);
+            }
+        }
+    }
+
+    /*
+     * Writes the sample's numbers as the next record and returns its row.
+     * Samples without a location are stored but only reachable by row. The
+     * record is readable here at once but only durable after flush().
+     */
+    public synchronized long append(SoilData data) throws IOException {
+        int location = -1;
+        if (data.getLocation() != null) {
+            Integer id = locationIds.get(data.getLocation());
+            if (id == null) {
+                // The name must be on disk before any record refers to it
+                locationsOut.writeUTF(data.getLocation());
+                locationsOut.flush();
+                id = locationNames.size();
+                locationIds.put(data.getLocation(), id);
+                locationNames.add(data.getLocation());
+                indexes.add(new LocationIndex());
+            }
+            location = id;
+        }
+
+        long row = count;
+        long time = data.getAnalysisDate() != null ? data.getAnalysisDate().toEpochSecond(ZoneOffset.UTC) : 0;
+        MappedByteBuffer segment = segment(row);
+        int offset = offsetInSegment(row);
+        segment.putLong(offset + TIME_OFFSET, time);
+        segment.putInt(offset + LOCATION_OFFSET, location);
+        segment.putInt(offset + SOIL_TYPE_OFFSET, data.getSoilType() != null ? data.getSoilType().ordinal() : -1);
+        int f = offset + FIELDS_OFFSET;
+        segment.putDouble(f, data.getPh());
+        segment.putDouble(f += 8, data.getNitrogen());
+        segment.putDouble(f += 8, data.getPhosphorus());
+        segment.putDouble(f += 8, data.getPotassium());
+        segment.putDouble(f += 8, data.getOrganicMatter());
+        segment.putDouble(f += 8, data.getMoisture());
+        segment.putDouble(f += 8, data.getTemperature());
+        segment.putDouble(f += 8, data.getBulkDensity());
+        segment.putDouble(f += 8, data.getCationExchangeCapacity());
+        segment.putDouble(f += 8, data.getIron());
+        segment.putDouble(f += 8, data.getZinc());
+        segment.putDouble(f += 8, data.getCopper());
+        segment.putDouble(f += 8, data.getManganese());
+        segment.putDouble(f += 8, data.getSandPercentage());
+        segment.putDouble(f += 8, data.getSiltPercentage());
+        segment.putDouble(f + 8, data.getClayPercentage());
+
+        count = row + 1;
+        if (location >= 0) {
+            indexes.get(location).add(time, row);
+        }
+        return row;
+    }
+
+    // Commits the records appended since the last flush: their bytes reach the disk before the count does
+    public synchronized void flush() {
+        long n = count;
+        if (n == flushedCount) {
+            return;
+        }
+        for (long row = flushedCount; row < n; ) {
+            long segmentEnd = Math.min(n, (row / SEGMENT_RECORDS + 1) * SEGMENT_RECORDS);
+            int offset = offsetInSegment(row);
+            segment(row).force(offset, (int) (segmentEnd - row) * RECORD_BYTES);
+            row = segmentEnd;
+        }
+        header.putLong(COUNT_OFFSET, n);
+        header.force();
+        flushedCount = n;
+    }
+
+    public long size() { return count; }
+
+    public synchronized List<String> getLocations() {
+        return Collections.unmodifiableList(new ArrayList<>(locationNames));
+    }
+
+    /*
+     * Visits the samples for a location dated within [from, to], oldest first.
+     * The same SampleView is repositioned for every sample, so copy out what
+     * you need rather than keeping it.
+     */
+    public void forEach(String location, LocalDate from, LocalDate to, Consumer<SampleView> consumer) {
+        long[] rows = rows(location, from, to);
+        SampleView view = new SampleView();
+        for (long row : rows) {
+            view.moveTo(row);
+            consumer.accept(view);
+        }
+    }
+
+    public int count(String location, LocalDate from, LocalDate to) {
+        return rows(location, from, to).length;
+    }
+
+    // Mean of one measurement across a location's samples in the range, NaN if there are none
+    public double average(String location, Field field, LocalDate from, LocalDate to) {
+        long[] rows = rows(location, from, to);
+        if (rows.length == 0) {
+            return Double.NaN;
+        }
+        int fieldOffset = FIELDS_OFFSET + field.ordinal() * Double.BYTES;
+        double sum = 0;
+        for (long row : rows) {
+            sum += segment(row).getDouble(offsetInSegment(row) + fieldOffset);
+        }
+        return sum / rows.length;
+    }
+
+    private synchronized long[] rows(String location, LocalDate from, LocalDate to) {
+        Integer id = locationIds.get(location);
+        if (id == null) {
+            return new long[0];
+        }
+        long start = from.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        long end = to.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return indexes.get(id).range(start, end);
+    }
+
+    private MappedByteBuffer segment(long row) {
+        int index = (int) (row / SEGMENT_RECORDS);
+        MappedByteBuffer[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        return mapSegment(index);
+    }
+
+    // Mapping READ_WRITE past the end grows the file, so segments are allocated whole
+    private synchronized MappedByteBuffer mapSegment(int index) {
+        MappedByteBuffer[] current = segments;
+        if (index < current.length) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+        try {
+            for (int i = current.length; i <= index; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * SEGMENT_BYTES, SEGMENT_BYTES);
+            }
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException("Could not map " + path, e);
+        }
+        segments = grown;
+        return grown[index];
+    }
+
+    private static int offsetInSegment(long row) {
+        return (int) (row % SEGMENT_RECORDS) * RECORD_BYTES;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        locationsOut.close();
+        channel.close();
+    }
+
+    // Reads one archived record straight from the mapped file
+    public class SampleView {
+        private MappedByteBuffer segment;
+        private int offset;
+        private long row;
+
+        private SampleView() {
+        }
+
+        void moveTo(long row) {
+            this.row = row;
+            this.segment = segment(row);
+            this.offset = offsetInSegment(row);
+        }
+
+        public long getRow() { return row; }
+
+        public LocalDateTime getAnalysisDate() {
+            return LocalDateTime.ofEpochSecond(segment.getLong(offset + TIME_OFFSET), 0, ZoneOffset.UTC);
+        }
+
+        public String getLocation() {
+            int id = segment.getInt(offset + LOCATION_OFFSET);
+            synchronized (SoilSampleArchive.this) {
+                return id >= 0 ? locationNames.get(id) : null;
+            }
+        }
+
+        public SoilData.SoilType getSoilType() {
+            int type = segment.getInt(offset + SOIL_TYPE_OFFSET);
+            return type >= 0 && type < SOIL_TYPES.length ? SOIL_TYPES[type] : null;
+        }
+
+        public double get(Field field) {
+            return segment.getDouble(offset + FIELDS_OFFSET + field.ordinal() * Double.BYTES);
+        }
+
+        public double getPh() { return get(Field.PH); }
+        public double getNitrogen() { return get(Field.NITROGEN); }
+        public double getPhosphorus() { return get(Field.PHOSPHORUS); }
+        public double getPotassium() { return get(Field.POTASSIUM); }
+        public double getOrganicMatter() { return get(Field.ORGANIC_MATTER); }
+        public double getMoisture() { return get(Field.MOISTURE); }
+
+        // Copies the record into a new SoilData, for code that needs the full object
+        public SoilData toSoilData() {
+            SoilData data = new SoilData();
+            data.setId("ARCHIVE-" + row);
+            data.setAnalysisDate(getAnalysisDate());
+            data.setLocation(getLocation());
+            data.setSoilType(getSoilType());
+            data.setPh(get(Field.PH));
+            data.setNitrogen(get(Field.NITROGEN));
+            data.setPhosphorus(get(Field.PHOSPHORUS));
+            data.setPotassium(get(Field.POTASSIUM));
+            data.setOrganicMatter(get(Field.ORGANIC_MATTER));
+            data.setMoisture(get(Field.MOISTURE));
+            data.setTemperature(get(Field.TEMPERATURE));
+            data.setBulkDensity(get(Field.BULK_DENSITY));
+            data.setCationExchangeCapacity(get(Field.CATION_EXCHANGE_CAPACITY));
+            data.setIron(get(Field.IRON));
+            data.setZinc(get(Field.ZINC));
+            data.setCopper(get(Field.COPPER));
+            data.setManganese(get(Field.MANGANESE));
+            data.setSandPercentage(get(Field.SAND));
+            data.setSiltPercentage(get(Field.SILT));
+            data.setClayPercentage(get(Field.CLAY));
+            return data;
+        }
+    }
+
+    // One location's rows ordered by sample time; appends are usually in time order
+    private static class LocationIndex {
+        private long[] times = new long[16];
+        private long[] rows = new long[16];
+        private int size;
+
+        void add(long time, long row) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int at = size;
+            if (size > 0 && times[size - 1] > time) {
+                at = upperBound(time);
+                System.arraycopy(times, at, times, at + 1, size - at);
+                System.arraycopy(rows, at, rows, at + 1, size - at);
+            }
+            times[at] = time;
+            rows[at] = row;
+            size++;
+        }
+
+        // Rows with start <= time < end
+        long[] range(long start, long end) {
+            int from = lowerBound(start);
+            int to = lowerBound(end);
+            return from < to ? Arrays.copyOfRange(rows, from, to) : new long[0];
+        }
+
+        private int lowerBound(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int upperBound(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -18,8 +18,12 @@ import javafx.scene.image.Image;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.paint.Color;
 import com.jfoenix.controls.*;
+import com.soilanalysis.scoring.ScoreProfile;
+import com.soilanalysis.scoring.ScoringKernel;
+import model.DashboardStats;
 import model.User;
 import model.SoilAnalysis;
+import util.ColumnarSoilStore;
 import util.DatabaseUtil;
 import util.WeatherService;
 import java.time.LocalDate;
@@ -58,6 +62,13 @@ public class DashboardHomeController implements UserAwareController {
     private List<Notification> notifications;
     private Timer weatherUpdateTimer;
     private static final Duration CARD_HOVER_DURATION = Duration.millis(200);
+    // Rows the activity table shows for a search, best matches first
+    private static final int SEARCH_RESULTS = 50;
+    // Measurements the trend score reads
+    private static final ColumnarSoilStore.Column[] TREND_COLUMNS = {
+        ColumnarSoilStore.Column.PH, ColumnarSoilStore.Column.NITROGEN, ColumnarSoilStore.Column.PHOSPHORUS,
+        ColumnarSoilStore.Column.POTASSIUM, ColumnarSoilStore.Column.ORGANIC_MATTER, ColumnarSoilStore.Column.MOISTURE
+    };
 
     @FXML
     private void initialize() {
@@ -121,7 +132,7 @@ public class DashboardHomeController implements UserAwareController {
     private void initializeSearch() {
         searchField.textProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal.length() >= 2) {
-                List<SoilAnalysis> filteredAnalyses = DatabaseUtil.searchAnalyses(currentUser.getId(), newVal);
+                List<SoilAnalysis> filteredAnalyses = DatabaseUtil.searchAnalyses(currentUser.getId(), newVal, SEARCH_RESULTS);
                 recentActivityTable.getItems().setAll(filteredAnalyses);
             } else if (newVal.isEmpty()) {
                 refreshDashboard();
@@ -169,7 +180,7 @@ public class DashboardHomeController implements UserAwareController {
         // Initialize chart time range
         chartTimeRange.getItems().addAll("Last 7 days", "Last 30 days", "Last 90 days", "Last year");
         chartTimeRange.setValue("Last 30 days");
-        chartTimeRange.setOnAction(e -> updateHealthTrendChart(DatabaseUtil.getRecentAnalyses(currentUser.getId())));
+        chartTimeRange.setOnAction(e -> updateHealthTrendChart());
     }
 
     private void initializeNotifications() {
@@ -269,9 +280,10 @@ public class DashboardHomeController implements UserAwareController {
         lastUpdatedLabel.setText("Last updated: " + LocalDate.now().format(DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm")));
 
         // Load data from database
-        int analysesCount = DatabaseUtil.getAnalysisCount(currentUser.getId());
-        int recommendationsCount = DatabaseUtil.getActiveRecommendationsCount(currentUser.getId());
-        double healthScore = DatabaseUtil.getAverageSoilHealth(currentUser.getId());
+        DashboardStats stats = DatabaseUtil.getDashboardStats(currentUser.getId());
+        int analysesCount = stats.getAnalysisCount();
+        int recommendationsCount = stats.getPendingCount();
+        double healthScore = stats.getAverageSoilHealth();
 
         // Update counts with animations
         animateValue(recentAnalysesCount, analysesCount);
@@ -288,7 +300,7 @@ public class DashboardHomeController implements UserAwareController {
         recentActivityTable.getItems().setAll(recentAnalyses);
 
         // Update health trend chart
-        updateHealthTrendChart(recentAnalyses);
+        updateHealthTrendChart();
     }
 
     private void animateValue(Label label, int targetValue) {
@@ -316,20 +328,41 @@ public class DashboardHomeController implements UserAwareController {
         }).start();
     }
 
-    private void updateHealthTrendChart(List<SoilAnalysis> analyses) {
+    private int chartRangeDays() {
+        switch (chartTimeRange.getValue()) {
+            case "Last 7 days": return 7;
+            case "Last 90 days": return 90;
+            case "Last year": return 365;
+            default: return 30;
+        }
+    }
+
+    private void updateHealthTrendChart() {
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Soil Health Score");
 
-        // Sort analyses by date
-        analyses.sort((a1, a2) -> a1.getDate().compareTo(a2.getDate()));
-
-        // Add data points
-        for (SoilAnalysis analysis : analyses) {
-            double healthScore = calculateHealthScore(analysis);
-            series.getData().add(new XYChart.Data<>(
-                LocalDate.parse(analysis.getDate()).format(DateTimeFormatter.ofPattern("MMM dd")),
-                healthScore
-            ));
+        // Score every sample in the chosen range in one pass over the measurement columns
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(chartRangeDays() - 1);
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        ColumnarSoilStore.Range range = DatabaseUtil.measurementRange(currentUser.getId(), from, to);
+        double[][] columns = new double[ScoreProfile.INPUT_COUNT][];
+        for (ColumnarSoilStore.Column column : TREND_COLUMNS) {
+            columns[ScoreProfile.Input.valueOf(column.name()).ordinal()] = range.values(column);
+        }
+        double[] healthScores = new double[range.size()];
+        ScoringKernel.scoreAll(ScoreProfile.DASHBOARD_TREND, columns, range.size(), healthScores);
+
+        // One point per day with samples: the average of that day's scores
+        double[] dailyScores = range.dailyAverages(healthScores, fromDay, toDay);
+        for (int d = 0; d < dailyScores.length; d++) {
+            if (!Double.isNaN(dailyScores[d])) {
+                series.getData().add(new XYChart.Data<>(
+                    from.plusDays(d).format(DateTimeFormatter.ofPattern("MMM dd")),
+                    dailyScores[d]
+                ));
+            }
         }
 
         // Update chart with animation
@@ -343,36 +376,6 @@ public class DashboardHomeController implements UserAwareController {
         fadeIn.play();
     }
 
-    private double calculateHealthScore(SoilAnalysis analysis) {
-        // Calculate a weighted average of soil parameters
-        double phScore = calculatePhScore(analysis.getPh());
-        double nutrientScore = calculateNutrientScore(
-            analysis.getNitrogen(),
-            analysis.getPhosphorus(),
-            analysis.getPotassium()
-        );
-        double organicScore = analysis.getOrganicMatter() / 10.0; // Assuming 10% is optimal
-        double moistureScore = analysis.getMoisture() / 100.0;
-
-        return (phScore * 0.3 + nutrientScore * 0.4 + organicScore * 0.2 + moistureScore * 0.1) * 100;
-    }
-
-    private double calculatePhScore(double ph) {
-        // Optimal pH is between 6.0 and 7.0
-        if (ph >= 6.0 && ph <= 7.0) return 1.0;
-        if (ph >= 5.5 && ph <= 7.5) return 0.8;
-        if (ph >= 5.0 && ph <= 8.0) return 0.6;
-        return 0.4;
-    }
-
-    private double calculateNutrientScore(double nitrogen, double phosphorus, double potassium) {
-        // Optimal ranges: N: 40-200, P: 20-100, K: 150-300 mg/kg
-        double nScore = Math.min(nitrogen / 200.0, 1.0);
-        double pScore = Math.min(phosphorus / 100.0, 1.0);
-        double kScore = Math.min(potassium / 300.0, 1.0);
-        return (nScore + pScore + kScore) / 3.0;
-    }
-
     @FXML
     private void startNewAnalysis() {
         try {
@@ -3,6 +3,8 @@ package controller;
 import com.jfoenix.controls.JFXButton;
 import com.jfoenix.controls.JFXTextArea;
 import com.jfoenix.controls.JFXTextField;
+import com.soilanalysis.rules.RuleEngine;
+import com.soilanalysis.rules.RuleSet;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -170,33 +172,18 @@ public class NewAnalysisController implements UserAwareController {
 
     private String generateRecommendations() {
         StringBuilder recommendations = new StringBuilder();
-        double ph = Double.parseDouble(phField.getText());
-        double nitrogen = Double.parseDouble(nitrogenField.getText());
-        double phosphorus = Double.parseDouble(phosphorusField.getText());
-        double potassium = Double.parseDouble(potassiumField.getText());
-        double organicMatter = Double.parseDouble(organicMatterField.getText());
-
-        // pH recommendations
-        if (ph < 6.0) {
-            recommendations.append("• Soil is acidic. Consider applying lime to raise pH.\n");
-        } else if (ph > 7.5) {
-            recommendations.append("• Soil is alkaline. Consider applying sulfur to lower pH.\n");
-        }
-
-        // Nutrient recommendations
-        if (nitrogen < 40) {
-            recommendations.append("• Low nitrogen levels. Apply nitrogen-rich fertilizer.\n");
-        }
-        if (phosphorus < 20) {
-            recommendations.append("• Low phosphorus levels. Apply phosphate fertilizer.\n");
-        }
-        if (potassium < 150) {
-            recommendations.append("• Low potassium levels. Apply potash fertilizer.\n");
-        }
-
-        // Organic matter recommendations
-        if (organicMatter < 3.0) {
-            recommendations.append("• Low organic matter. Add compost or organic amendments.\n");
+        RuleSet rules = RuleEngine.get(RuleEngine.ENTRY_FORM);
+        double[] inputs = RuleSet.newInputs();
+        inputs[RuleSet.Input.PH.ordinal()] = Double.parseDouble(phField.getText());
+        inputs[RuleSet.Input.NITROGEN.ordinal()] = Double.parseDouble(nitrogenField.getText());
+        inputs[RuleSet.Input.PHOSPHORUS.ordinal()] = Double.parseDouble(phosphorusField.getText());
+        inputs[RuleSet.Input.POTASSIUM.ordinal()] = Double.parseDouble(potassiumField.getText());
+        inputs[RuleSet.Input.ORGANIC_MATTER.ordinal()] = Double.parseDouble(organicMatterField.getText());
+
+        for (long fired = rules.evaluate(inputs); fired != 0; fired &= fired - 1) {
+            recommendations.append("• ")
+                .append(rules.getAction(Long.numberOfTrailingZeros(fired)).getText())
+                .append("\n");
         }
 
         return recommendations.toString();
@@ -0,0 +1,44 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+public class AnalysisPage {
+    private final List<SoilAnalysis> analyses;
+    private final Cursor nextCursor;
+
+    public AnalysisPage(List<SoilAnalysis> analyses, Cursor nextCursor) {
+        this.analyses = Collections.unmodifiableList(analyses);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SoilAnalysis> getAnalyses() { return analyses; }
+
+    // Position to pass back for the following page, or null if this is the last one
+    public Cursor getNextCursor() { return nextCursor; }
+
+    public boolean hasNext() { return nextCursor != null; }
+
+    // Keyset position in the (date DESC, id DESC) history order
+    public static class Cursor {
+        private final String date;
+        private final int id;
+
+        public Cursor(String date, int id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        public static Cursor after(SoilAnalysis analysis) {
+            return new Cursor(analysis.getDate(), analysis.getId());
+        }
+
+        public String getDate() { return date; }
+        public int getId() { return id; }
+
+        @Override
+        public String toString() {
+            return date + "#" + id;
+        }
+    }
+}
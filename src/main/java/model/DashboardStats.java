@@ -0,0 +1,30 @@
+package model;
+
+public class DashboardStats {
+    private final int analysisCount;
+    private final int pendingCount;
+    private final double averageSoilHealth;
+
+    public DashboardStats(int analysisCount, int pendingCount, double averageSoilHealth) {
+        this.analysisCount = analysisCount;
+        this.pendingCount = pendingCount;
+        this.averageSoilHealth = averageSoilHealth;
+    }
+
+    // Analyses dated from the start of the current month onwards
+    public int getAnalysisCount() { return analysisCount; }
+
+    // All of the user's analyses still marked Pending
+    public int getPendingCount() { return pendingCount; }
+
+    public double getAverageSoilHealth() { return averageSoilHealth; }
+
+    @Override
+    public String toString() {
+        return "DashboardStats{" +
+                "analysisCount=" + analysisCount +
+                ", pendingCount=" + pendingCount +
+                ", averageSoilHealth=" + averageSoilHealth +
+                '}';
+    }
+}
@@ -0,0 +1,310 @@
+package util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * One user's soil measurements stored column by column: one double[] per
+ * nutrient and int[] columns for the sample's epoch day and id. Rows are
+ * kept sorted by day, so a day range is one contiguous slice found by
+ * binary search, and aggregates run one tight loop per column over it
+ * instead of following a pointer per sample.
+ *
+ * One writer at a time (the mutators are synchronized); readers take no
+ * lock. A reader takes the current Columns, then its row count, and only
+ * looks at rows below that count. A sample dated on or after the newest
+ * row is appended in place; growing copies into new arrays that are
+ * published before the count moves past the old capacity. Anything that
+ * would shift rows (an older date, a date change, a removal) builds new
+ * arrays instead, so a row's day never changes under a reader. A reader
+ * running alongside an in-place update of the values may see that one row
+ * half written.
+ */
+public class ColumnarSoilStore {
+    public enum Column { PH, NITROGEN, PHOSPHORUS, POTASSIUM, ORGANIC_MATTER, MOISTURE, IRON, ZINC, COPPER, MANGANESE }
+
+    private static final int COLUMN_COUNT = Column.values().length;
+
+    private static class Columns {
+        final double[][] values;
+        final int[] days;
+        final int[] ids;
+        // Rows in use; only ever grows for a given Columns
+        volatile int size;
+
+        Columns(int capacity) {
+            values = new double[COLUMN_COUNT][capacity];
+            days = new int[capacity];
+            ids = new int[capacity];
+        }
+
+        int capacity() { return days.length; }
+
+        // First row dated on or after day, or size
+        int lowerBound(int day, int size) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] < day) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // Copies rows [from, to) of this into c starting at row at
+        void copyRows(int from, int to, Columns c, int at) {
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                System.arraycopy(values[col], from, c.values[col], at, to - from);
+            }
+            System.arraycopy(days, from, c.days, at, to - from);
+            System.arraycopy(ids, from, c.ids, at, to - from);
+        }
+    }
+
+    private volatile Columns columns;
+    // Each stored id's day, to find its row
+    private final Map<Integer, Integer> daysById = new HashMap<>();
+
+    public ColumnarSoilStore() {
+        this(16);
+    }
+
+    public ColumnarSoilStore(int initialCapacity) {
+        this.columns = new Columns(Math.max(16, initialCapacity));
+    }
+
+    /*
+     * Adds the sample, or replaces the stored one with the same id. values are
+     * indexed by Column ordinal; missing trailing columns and NaN entries count
+     * as not measured.
+     */
+    public synchronized void put(int id, int epochDay, double... values) {
+        Integer existing = daysById.get(id);
+        Columns c = columns;
+        if (existing != null && existing == epochDay) {
+            writeRow(c, row(c, id, epochDay), id, epochDay, values);
+            return;
+        }
+        int size = c.size;
+        if (existing == null && (size == 0 || c.days[size - 1] <= epochDay)) {
+            if (size == c.capacity()) {
+                Columns grown = new Columns(size * 2);
+                c.copyRows(0, size, grown, 0);
+                grown.size = size;
+                columns = c = grown;
+            }
+            writeRow(c, size, id, epochDay, values);
+            c.size = size + 1;
+        } else {
+            // Rebuild with the row in its place, dropping the old one if the day changed
+            int removed = existing != null ? row(c, id, existing) : -1;
+            int live = existing != null ? size - 1 : size;
+            Columns rebuilt = new Columns(Math.max(16, live < c.capacity() ? c.capacity() : c.capacity() * 2));
+            int at = c.lowerBound(epochDay + 1, size);
+            int n = 0;
+            n = copyExcept(c, 0, at, removed, rebuilt, n);
+            writeRow(rebuilt, n++, id, epochDay, values);
+            n = copyExcept(c, at, size, removed, rebuilt, n);
+            rebuilt.size = n;
+            columns = rebuilt;
+        }
+        daysById.put(id, epochDay);
+    }
+
+    public synchronized boolean remove(int id) {
+        Integer day = daysById.remove(id);
+        if (day == null) {
+            return false;
+        }
+        Columns c = columns;
+        int size = c.size;
+        int row = row(c, id, day);
+        Columns rebuilt = new Columns(Math.max(16, size - 1 <= c.capacity() / 4 ? c.capacity() / 2 : c.capacity()));
+        c.copyRows(0, row, rebuilt, 0);
+        c.copyRows(row + 1, size, rebuilt, row);
+        rebuilt.size = size - 1;
+        columns = rebuilt;
+        return true;
+    }
+
+    public int size() { return columns.size; }
+
+    /*
+     * The rows dated within [fromDay, toDay], oldest first. The Range keeps
+     * the arrays it was taken from, so later reads through it see the same
+     * rows.
+     */
+    public Range range(int fromDay, int toDay) {
+        Columns c = columns;
+        int size = c.size;
+        if (toDay < fromDay) {
+            return new Range(c, 0, 0);
+        }
+        int from = c.lowerBound(fromDay, size);
+        int to = toDay == Integer.MAX_VALUE ? size : c.lowerBound(toDay + 1, size);
+        return new Range(c, from, to);
+    }
+
+    public Aggregate aggregate(int fromDay, int toDay) {
+        return range(fromDay, toDay).aggregate();
+    }
+
+    /*
+     * Per-day mean of one column for a trend chart: element d is the average
+     * for fromDay + d, NaN where nothing was measured that day.
+     */
+    public double[] dailyAverages(Column column, int fromDay, int toDay) {
+        return range(fromDay, toDay).dailyAverages(column, fromDay, toDay);
+    }
+
+    // Row of id, which is stored with the given day
+    private static int row(Columns c, int id, int day) {
+        for (int row = c.lowerBound(day, c.size); ; row++) {
+            if (c.ids[row] == id) {
+                return row;
+            }
+        }
+    }
+
+    private static void writeRow(Columns c, int row, int id, int epochDay, double[] values) {
+        for (int col = 0; col < COLUMN_COUNT; col++) {
+            c.values[col][row] = col < values.length ? values[col] : Double.NaN;
+        }
+        c.days[row] = epochDay;
+        c.ids[row] = id;
+    }
+
+    // Copies rows [from, to) of c except skip into target at row n; returns the next free row
+    private static int copyExcept(Columns c, int from, int to, int skip, Columns target, int n) {
+        if (skip >= from && skip < to) {
+            c.copyRows(from, skip, target, n);
+            c.copyRows(skip + 1, to, target, n + skip - from);
+            return n + to - from - 1;
+        }
+        c.copyRows(from, to, target, n);
+        return n + to - from;
+    }
+
+    // Per-day mean of values[from, to), whose rows are dated days[from, to) in order
+    private static double[] dailyAverages(double[] values, int valuesFrom, int[] days, int from, int to,
+                                          int fromDay, int toDay) {
+        int length = toDay < fromDay ? 0 : toDay - fromDay + 1;
+        double[] sums = new double[length];
+        int[] counts = new int[length];
+        for (int i = from; i < to; i++) {
+            double v = values[valuesFrom + i - from];
+            int day = days[i];
+            if (v == v && day >= fromDay && day <= toDay) {
+                sums[day - fromDay] += v;
+                counts[day - fromDay]++;
+            }
+        }
+        for (int d = 0; d < length; d++) {
+            sums[d] = counts[d] > 0 ? sums[d] / counts[d] : Double.NaN;
+        }
+        return sums;
+    }
+
+    public static class Range {
+        private final Columns columns;
+        private final int from;
+        private final int to;
+
+        private Range(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int size() { return to - from; }
+
+        // The column's values for these rows, in row order
+        public double[] values(Column column) {
+            return Arrays.copyOfRange(columns.values[column.ordinal()], from, to);
+        }
+
+        // Sum of one column over the rows, skipping unmeasured (NaN) values
+        public double sum(Column column) {
+            double[] values = columns.values[column.ordinal()];
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                double v = values[i];
+                if (v == v) {
+                    sum += v;
+                }
+            }
+            return sum;
+        }
+
+        public Aggregate aggregate() {
+            double[] sums = new double[COLUMN_COUNT];
+            int[] counts = new int[COLUMN_COUNT];
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                double[] values = columns.values[col];
+                double sum = 0;
+                int measured = 0;
+                for (int i = from; i < to; i++) {
+                    double v = values[i];
+                    if (v == v) {
+                        sum += v;
+                        measured++;
+                    }
+                }
+                sums[col] = sum;
+                counts[col] = measured;
+            }
+            return new Aggregate(size(), sums, counts);
+        }
+
+        // As ColumnarSoilStore.dailyAverages, over these rows
+        public double[] dailyAverages(Column column, int fromDay, int toDay) {
+            return ColumnarSoilStore.dailyAverages(columns.values[column.ordinal()], from, columns.days, from, to,
+                fromDay, toDay);
+        }
+
+        // Per-day mean of a value computed for each row, such as a score; perRow[i] belongs to row i of the range
+        public double[] dailyAverages(double[] perRow, int fromDay, int toDay) {
+            if (perRow.length < size()) {
+                throw new IllegalArgumentException("Need a value for each of the " + size() + " rows");
+            }
+            return ColumnarSoilStore.dailyAverages(perRow, 0, columns.days, from, to, fromDay, toDay);
+        }
+    }
+
+    public static class Aggregate {
+        private final int rows;
+        private final double[] sums;
+        private final int[] counts;
+
+        Aggregate(int rows, double[] sums, int[] counts) {
+            this.rows = rows;
+            this.sums = sums;
+            this.counts = counts;
+        }
+
+        public int getRows() { return rows; }
+        public double getSum(Column column) { return sums[column.ordinal()]; }
+        public int getCount(Column column) { return counts[column.ordinal()]; }
+
+        public double getAverage(Column column) {
+            int n = counts[column.ordinal()];
+            return n > 0 ? sums[column.ordinal()] / n : Double.NaN;
+        }
+
+        // Mean of every measured value in the given columns, 0.0 when none was measured
+        public double getMeanOf(Column... columns) {
+            double total = 0;
+            int measured = 0;
+            for (Column column : columns) {
+                total += sums[column.ordinal()];
+                measured += counts[column.ordinal()];
+            }
+            return measured > 0 ? total / measured : 0.0;
+        }
+    }
+}
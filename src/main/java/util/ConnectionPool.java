@@ -0,0 +1,274 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPool implements AutoCloseable {
+    // How long a connection waits on a locked database before SQLite reports SQLITE_BUSY
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    private final String url;
+    private final StorageProfile profile;
+    private final int readPoolSize;
+    private final long acquireTimeoutMillis;
+    private final BlockingQueue<Connection> idleReaders;
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private Connection writer;
+    private volatile boolean closed;
+    private ScheduledExecutorService checkpointer;
+    private Connection checkpointConnection;
+
+    private final LongAdder readAcquisitions = new LongAdder();
+    private final LongAdder writeAcquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /*
+     * SQLite allows many concurrent readers but only one writer, so the pool
+     * keeps a fixed set of read connections and a single write connection.
+     * Writers queue fairly behind one permit instead of fighting over the
+     * database lock and failing with SQLITE_BUSY.
+     */
+    public ConnectionPool(String url, StorageProfile profile, int readPoolSize, long acquireTimeoutMillis)
+            throws SQLException {
+        if (readPoolSize < 1) {
+            throw new IllegalArgumentException("readPoolSize must be at least 1");
+        }
+        this.url = url;
+        this.profile = profile;
+        this.readPoolSize = readPoolSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleReaders = new ArrayBlockingQueue<>(readPoolSize);
+
+        // The writer opens first so the journal mode is in place before any reader attaches
+        this.writer = openConnection(false);
+        for (int i = 0; i < readPoolSize; i++) {
+            idleReaders.add(openConnection(true));
+        }
+        if (profile.usesBackgroundCheckpoints()) {
+            startCheckpointer();
+        }
+    }
+
+    /*
+     * In WAL mode SQLite checkpoints automatically inside whichever commit
+     * crosses the WAL size threshold, stalling that save. A PASSIVE checkpoint
+     * on a dedicated background connection copies committed pages back into
+     * the database without waiting on readers or the writer, so commits
+     * rarely hit the threshold themselves.
+     */
+    private void startCheckpointer() throws SQLException {
+        checkpointConnection = DriverManager.getConnection(url);
+        try (Statement stmt = checkpointConnection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sqlite-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = profile.getCheckpointIntervalSeconds();
+        checkpointer.scheduleWithFixedDelay(() -> checkpoint("PASSIVE"), interval, interval, TimeUnit.SECONDS);
+    }
+
+    private synchronized void checkpoint(String mode) {
+        if (checkpointConnection == null) {
+            return;
+        }
+        try (Statement stmt = checkpointConnection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(" + mode + ")");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public Lease read() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = idleReaders.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+        recordWait(start, connection != null, "read");
+        readAcquisitions.increment();
+        return new Lease(connection, true);
+    }
+
+    public Lease write() throws SQLException {
+        ensureOpen();
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = writerPermit.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+        recordWait(start, acquired, "write");
+        writeAcquisitions.increment();
+        return new Lease(writer, false);
+    }
+
+    private void recordWait(long start, boolean acquired, String kind) throws SQLException {
+        waitNanos.add(System.nanoTime() - start);
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a " + kind + " connection");
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+        profile.applyTo(connection, !readOnly);
+        return connection;
+    }
+
+    private void release(Connection connection, boolean reader) {
+        try {
+            if (connection.isClosed()) {
+                connection = openConnection(reader);
+            } else if (!connection.getAutoCommit()) {
+                // Never hand out a connection with someone else's transaction still open
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        if (closed) {
+            closeQuietly(connection);
+            if (!reader) {
+                writerPermit.release();
+            }
+            return;
+        }
+        if (reader) {
+            idleReaders.offer(connection);
+        } else {
+            writer = connection;
+            writerPermit.release();
+        }
+    }
+
+    public StorageProfile getProfile() { return profile; }
+
+    public Metrics getMetrics() {
+        long acquisitions = readAcquisitions.sum() + writeAcquisitions.sum();
+        return new Metrics(readPoolSize, idleReaders.size(), writerPermit.availablePermits() == 0,
+                readAcquisitions.sum(), writeAcquisitions.sum(), timeouts.sum(),
+                acquisitions > 0 ? waitNanos.sum() / 1_000_000.0 / acquisitions : 0.0);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+            // Fold the WAL back into the main file so it doesn't linger on disk
+            checkpoint("TRUNCATE");
+            synchronized (this) {
+                closeQuietly(checkpointConnection);
+                checkpointConnection = null;
+            }
+        }
+        Connection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            closeQuietly(reader);
+        }
+        // Leased connections are closed as they come back
+        if (writerPermit.tryAcquire()) {
+            closeQuietly(writer);
+            writerPermit.release();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final boolean reader;
+        private boolean released;
+
+        private Lease(Connection connection, boolean reader) {
+            this.connection = connection;
+            this.reader = reader;
+        }
+
+        public Connection connection() { return connection; }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(connection, reader);
+            }
+        }
+    }
+
+    public static class Metrics {
+        private final int readPoolSize;
+        private final int idleReaders;
+        private final boolean writerBusy;
+        private final long readAcquisitions;
+        private final long writeAcquisitions;
+        private final long timeouts;
+        private final double averageWaitMillis;
+
+        Metrics(int readPoolSize, int idleReaders, boolean writerBusy, long readAcquisitions,
+                long writeAcquisitions, long timeouts, double averageWaitMillis) {
+            this.readPoolSize = readPoolSize;
+            this.idleReaders = idleReaders;
+            this.writerBusy = writerBusy;
+            this.readAcquisitions = readAcquisitions;
+            this.writeAcquisitions = writeAcquisitions;
+            this.timeouts = timeouts;
+            this.averageWaitMillis = averageWaitMillis;
+        }
+
+        public int getReadPoolSize() { return readPoolSize; }
+        public int getIdleReaders() { return idleReaders; }
+        public int getActiveReaders() { return readPoolSize - idleReaders; }
+        public boolean isWriterBusy() { return writerBusy; }
+        public long getReadAcquisitions() { return readAcquisitions; }
+        public long getWriteAcquisitions() { return writeAcquisitions; }
+        public long getTimeouts() { return timeouts; }
+        public double getAverageWaitMillis() { return averageWaitMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("ConnectionPool{readers=%d/%d active, writerBusy=%b, reads=%d, writes=%d, timeouts=%d, avgWait=%.3f ms}",
+                    getActiveReaders(), readPoolSize, writerBusy, readAcquisitions, writeAcquisitions, timeouts, averageWaitMillis);
+        }
+    }
+}
@@ -1,36 +1,128 @@
 package util;
 
+import com.soilanalysis.rules.RuleEngine;
+import com.soilanalysis.rules.RuleSet;
 import model.SoilAnalysis;
 import model.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DataManager {
     private static final Map<Integer, User> users = new ConcurrentHashMap<>();
     private static final Map<Integer, SoilAnalysis> analyses = new ConcurrentHashMap<>();
-    private static int nextUserId = 1;
-    private static int nextAnalysisId = 1;
+    // Per-user history ordered by historyKey(date, id), and where each analysis currently sits in it
+    private static final Map<Integer, ConcurrentSkipListMap<Long, SoilAnalysis>> historyByUser = new ConcurrentHashMap<>();
+    private static final Map<Integer, HistoryEntry> historyEntries = new ConcurrentHashMap<>();
+    // Each user's measurements laid out column by column for averages and trends
+    private static final Map<Integer, ColumnarSoilStore> measurementsByUser = new ConcurrentHashMap<>();
+    private static final ColumnarSoilStore.Column[] HEALTH_COLUMNS = {
+        ColumnarSoilStore.Column.PH, ColumnarSoilStore.Column.NITROGEN, ColumnarSoilStore.Column.PHOSPHORUS,
+        ColumnarSoilStore.Column.POTASSIUM, ColumnarSoilStore.Column.ORGANIC_MATTER, ColumnarSoilStore.Column.MOISTURE
+    };
+    // Unique keys for registration and login; an entry is reserved before the user is published
+    private static final Map<String, User> usersByUsername = new ConcurrentHashMap<>();
+    private static final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextUserId = new AtomicInteger(1);
+    private static final AtomicInteger nextAnalysisId = new AtomicInteger(1);
+    // Snapshot and journal files when -Dsoil.data.dir is set, otherwise data lives only in memory
+    private static SnapshotStore persistence;
     
-    // Initialize with some sample data
     static {
-        // Add sample user
-        User admin = new User(nextUserId++, "admin", "admin123", "Admin User", "admin@example.com", "ADMIN");
-        users.put(admin.getId(), admin);
-        
-        // Add sample analyses
-        LocalDate today = LocalDate.now();
-        addSampleAnalysis(admin.getId(), today.minusDays(30), "Field A", 6.5, 45.0, 35.0, 180.0, 3.2, 25.0);
-        addSampleAnalysis(admin.getId(), today.minusDays(15), "Field B", 7.2, 50.0, 40.0, 200.0, 3.5, 28.0);
-        addSampleAnalysis(admin.getId(), today, "Field A", 6.8, 48.0, 38.0, 190.0, 3.4, 26.0);
+        String dataDir = System.getProperty("soil.data.dir");
+        if (dataDir != null) {
+            try {
+                persistence = new SnapshotStore(Paths.get(dataDir), Boolean.getBoolean("soil.data.fsync"));
+                // Later records for the same id replace earlier ones
+                Map<Integer, SoilAnalysis> loaded = new HashMap<>();
+                persistence.load(new SnapshotStore.Sink() {
+                    public void user(User user) { restoreUser(user); }
+                    public void analysis(SoilAnalysis analysis) { loaded.put(analysis.getId(), analysis); }
+                });
+                restoreAnalyses(loaded.values());
+            } catch (IOException e) {
+                // Leave the files alone rather than snapshot over data we couldn't read
+                e.printStackTrace();
+                persistence = null;
+            }
+        }
+
+        // Initialize with some sample data
+        if (users.isEmpty() && analyses.isEmpty()) {
+            // Add sample user
+            User admin = new User(0, "admin", "admin123", "Admin User", "admin@example.com", "ADMIN");
+            registerUser(admin);
+            
+            // Add sample analyses
+            LocalDate today = LocalDate.now();
+            addSampleAnalysis(admin.getId(), today.minusDays(30), "Field A", 6.5, 45.0, 35.0, 180.0, 3.2, 25.0);
+            addSampleAnalysis(admin.getId(), today.minusDays(15), "Field B", 7.2, 50.0, 40.0, 200.0, 3.5, 28.0);
+            addSampleAnalysis(admin.getId(), today, "Field A", 6.8, 48.0, 38.0, 190.0, 3.4, 26.0);
+        }
+
+        if (persistence != null) {
+            persistence.startSnapshots(Long.getLong("soil.data.snapshotIntervalSeconds", 300),
+                users::values, analyses::values);
+        }
+    }
+
+    private static void restoreUser(User user) {
+        users.put(user.getId(), user);
+        usersByUsername.put(user.getUsername(), user);
+        if (user.getEmail() != null) {
+            usersByEmail.put(user.getEmail(), user);
+        }
+        nextUserId.accumulateAndGet(user.getId() + 1, Math::max);
+    }
+
+    private static void restoreAnalyses(Collection<SoilAnalysis> loaded) {
+        List<Restored> restored = new ArrayList<>(loaded.size());
+        for (SoilAnalysis analysis : loaded) {
+            try {
+                restored.add(new Restored(analysis, historyKey(LocalDate.parse(analysis.getDate()), analysis.getId())));
+            } catch (DateTimeParseException | NullPointerException e) {
+                e.printStackTrace();
+            }
+        }
+        // Skip-list inserts in key order run several times faster than in load order
+        restored.sort(Comparator.comparingInt((Restored r) -> r.userId).thenComparingLong(r -> r.key));
+        for (Restored r : restored) {
+            SoilAnalysis analysis = r.analysis;
+            analyses.put(analysis.getId(), analysis);
+            history(r.userId).put(r.key, analysis);
+            historyEntries.put(analysis.getId(), new HistoryEntry(r.userId, r.key));
+            addMeasurements(analysis, r.key);
+            nextAnalysisId.accumulateAndGet(analysis.getId() + 1, Math::max);
+        }
+    }
+
+    // Applies a change, journaling it first when persistence is on; false if the journal write failed
+    private static boolean persist(Runnable change) {
+        if (persistence == null) {
+            change.run();
+            return true;
+        }
+        try {
+            persistence.mutate(change);
+            return true;
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+            return false;
+        }
     }
     
     private static void addSampleAnalysis(int userId, LocalDate date, String location, 
                                         double ph, double nitrogen, double phosphorus, 
                                         double potassium, double organicMatter, double moisture) {
         SoilAnalysis analysis = new SoilAnalysis(
-            nextAnalysisId++,
+            nextAnalysisId.getAndIncrement(),
             userId,
             date.toString(),
             "Standard Analysis",
@@ -45,76 +137,92 @@ public class DataManager {
             location,
             generateRecommendations(ph, nitrogen, phosphorus, potassium, organicMatter, moisture)
         );
-        analyses.put(analysis.getId(), analysis);
+        persist(() -> index(analysis, date));
     }
     
     private static String generateRecommendations(double ph, double nitrogen, double phosphorus, 
                                                double potassium, double organicMatter, double moisture) {
-        List<String> recommendations = new ArrayList<>();
-        
-        // pH recommendations
-        if (ph < 6.0) {
-            recommendations.add("Consider adding lime to raise soil pH");
-        } else if (ph > 7.5) {
-            recommendations.add("Consider adding sulfur to lower soil pH");
-        }
-        
-        // Nutrient recommendations
-        if (nitrogen < 40) {
-            recommendations.add("Apply nitrogen-rich fertilizer");
-        }
-        if (phosphorus < 30) {
-            recommendations.add("Add phosphate fertilizer");
-        }
-        if (potassium < 150) {
-            recommendations.add("Apply potash fertilizer");
-        }
-        
-        // Organic matter recommendations
-        if (organicMatter < 3.0) {
-            recommendations.add("Add organic compost to improve soil structure");
+        RuleSet rules = RuleEngine.get(RuleEngine.DATA_MANAGER);
+        double[] inputs = RuleSet.newInputs();
+        inputs[RuleSet.Input.PH.ordinal()] = ph;
+        inputs[RuleSet.Input.NITROGEN.ordinal()] = nitrogen;
+        inputs[RuleSet.Input.PHOSPHORUS.ordinal()] = phosphorus;
+        inputs[RuleSet.Input.POTASSIUM.ordinal()] = potassium;
+        inputs[RuleSet.Input.ORGANIC_MATTER.ordinal()] = organicMatter;
+        inputs[RuleSet.Input.MOISTURE.ordinal()] = moisture;
+
+        long fired = rules.evaluate(inputs);
+        if (fired == 0) {
+            return "Soil conditions are optimal. Maintain current management practices.";
         }
-        
-        // Moisture recommendations
-        if (moisture < 20) {
-            recommendations.add("Increase irrigation frequency");
-        } else if (moisture > 35) {
-            recommendations.add("Improve drainage to prevent waterlogging");
+        StringBuilder recommendations = new StringBuilder();
+        for (; fired != 0; fired &= fired - 1) {
+            if (recommendations.length() > 0) {
+                recommendations.append("\n• ");
+            }
+            recommendations.append(rules.getAction(Long.numberOfTrailingZeros(fired)).getText());
         }
-        
-        return recommendations.isEmpty() ? 
-            "Soil conditions are optimal. Maintain current management practices." :
-            String.join("\n• ", recommendations);
+        return recommendations.toString();
     }
     
     // User management methods
     public static User authenticateUser(String username, String password) {
-        return users.values().stream()
-            .filter(u -> u.getUsername().equals(username) && u.getPassword().equals(password))
-            .findFirst()
-            .orElse(null);
+        User user = username != null ? usersByUsername.get(username) : null;
+        // Skip a registration still in progress or one that lost on its email
+        if (user == null || users.get(user.getId()) != user) {
+            return null;
+        }
+        return user.getPassword().equals(password) ? user : null;
     }
     
+    /*
+     * Claims the username and then the email with putIfAbsent, so of two
+     * concurrent registrations for the same name or address exactly one wins.
+     * If the email is already taken the username claim is released again.
+     * The user only becomes visible in users once both keys are held.
+     */
     public static boolean registerUser(User user) {
-        if (users.values().stream().anyMatch(u -> 
-            u.getUsername().equals(user.getUsername()) || 
-            u.getEmail().equals(user.getEmail()))) {
+        if (user.getUsername() == null || usersByUsername.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
+        if (user.getEmail() != null && usersByEmail.putIfAbsent(user.getEmail(), user) != null) {
+            usersByUsername.remove(user.getUsername(), user);
             return false;
         }
         
-        user.setId(nextUserId++);
-        users.put(user.getId(), user);
-        return true;
+        user.setId(nextUserId.getAndIncrement());
+        boolean saved = persist(() -> {
+            if (persistence != null) {
+                persistence.appendUser(user);
+            }
+            users.put(user.getId(), user);
+        });
+        if (!saved) {
+            if (user.getEmail() != null) {
+                usersByEmail.remove(user.getEmail(), user);
+            }
+            usersByUsername.remove(user.getUsername(), user);
+        }
+        return saved;
     }
     
     // Analysis management methods
     public static List<SoilAnalysis> getRecentAnalyses(int userId) {
-        return analyses.values().stream()
-            .filter(a -> a.getUserId() == userId)
-            .sorted((a1, a2) -> LocalDate.parse(a2.getDate())
-                .compareTo(LocalDate.parse(a1.getDate())))
-            .limit(10)
-            .collect(Collectors.toList());
+        List<SoilAnalysis> recent = new ArrayList<>();
+        for (SoilAnalysis analysis : history(userId).descendingMap().values()) {
+            if (recent.size() == 10) {
+                break;
+            }
+            recent.add(analysis);
+        }
+        return recent;
+    }
+
+    // A user's analyses dated within [from, to], newest first
+    public static List<SoilAnalysis> getAnalysesBetween(int userId, LocalDate from, LocalDate to) {
+        return new ArrayList<>(history(userId)
+            .subMap(historyKey(from, 0), true, historyKey(to, Integer.MAX_VALUE), true)
+            .descendingMap().values());
     }
     
     public static List<SoilAnalysis> getAllAnalyses() {
@@ -122,36 +230,121 @@ public class DataManager {
     }
     
     public static boolean saveSoilAnalysis(SoilAnalysis analysis) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(analysis.getDate());
+        } catch (DateTimeParseException | NullPointerException e) {
+            e.printStackTrace();
+            return false;
+        }
         if (analysis.getId() == 0) {
-            analysis.setId(nextAnalysisId++);
+            analysis.setId(nextAnalysisId.getAndIncrement());
         }
-        analyses.put(analysis.getId(), analysis);
-        return true;
+        return persist(() -> index(analysis, date));
+    }
+
+    /*
+     * Puts the analysis in the main map and in its user's history. The date is
+     * parsed once here instead of on every query. An analysis saved again with a
+     * new date or user is moved; compute() holds the id's entry while doing so,
+     * so concurrent saves of the same analysis can't leave a stale copy behind.
+     * Changing the date on a stored object only takes effect once it is saved.
+     */
+    private static void index(SoilAnalysis analysis, LocalDate date) {
+        long key = historyKey(date, analysis.getId());
+        historyEntries.compute(analysis.getId(), (id, previous) -> {
+            // Journaled inside compute so the journal sees saves of one analysis in the order applied
+            if (persistence != null) {
+                persistence.appendAnalysis(analysis);
+            }
+            if (previous != null && (previous.userId != analysis.getUserId() || previous.key != key)) {
+                history(previous.userId).remove(previous.key);
+                if (previous.userId != analysis.getUserId()) {
+                    measurements(previous.userId).remove(id);
+                }
+            }
+            analyses.put(id, analysis);
+            history(analysis.getUserId()).put(key, analysis);
+            addMeasurements(analysis, key);
+            return new HistoryEntry(analysis.getUserId(), key);
+        });
+    }
+
+    private static void addMeasurements(SoilAnalysis analysis, long key) {
+        measurements(analysis.getUserId()).put(analysis.getId(), (int) (key >> 32),
+            analysis.getPh(), analysis.getNitrogen(), analysis.getPhosphorus(),
+            analysis.getPotassium(), analysis.getOrganicMatter(), analysis.getMoisture());
+    }
+
+    private static ColumnarSoilStore measurements(int userId) {
+        return measurementsByUser.computeIfAbsent(userId, id -> new ColumnarSoilStore());
+    }
+
+    private static ConcurrentSkipListMap<Long, SoilAnalysis> history(int userId) {
+        return historyByUser.computeIfAbsent(userId, id -> new ConcurrentSkipListMap<>());
+    }
+
+    // Epoch day in the high half and id in the low half, so keys sort by date, then id
+    private static long historyKey(LocalDate date, int id) {
+        return (date.toEpochDay() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static ConcurrentNavigableMap<Long, SoilAnalysis> thisMonth(int userId) {
+        return history(userId).tailMap(historyKey(LocalDate.now().withDayOfMonth(1), 0));
     }
     
     public static int getAnalysisCount(int userId) {
-        LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        return (int) analyses.values().stream()
-            .filter(a -> a.getUserId() == userId && 
-                LocalDate.parse(a.getDate()).isAfter(monthStart.minusDays(1)))
-            .count();
+        return thisMonth(userId).size();
     }
     
     public static int getActiveRecommendationsCount(int userId) {
-        return (int) analyses.values().stream()
-            .filter(a -> a.getUserId() == userId && 
-                a.getStatus().equals("Pending"))
+        return (int) history(userId).values().stream()
+            .filter(a -> a.getStatus().equals("Pending"))
             .count();
     }
     
     public static double getAverageSoilHealth(int userId) {
-        LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        return analyses.values().stream()
-            .filter(a -> a.getUserId() == userId && 
-                LocalDate.parse(a.getDate()).isAfter(monthStart.minusDays(1)))
+        return thisMonth(userId).values().stream()
             .mapToDouble(a -> (a.getPh() + a.getNitrogen() + a.getPhosphorus() + 
                              a.getPotassium() + a.getOrganicMatter() + a.getMoisture()) / 6.0)
             .average()
             .orElse(0.0);
     }
-} 
\ No newline at end of file
+
+    /*
+     * Average soil health over any date range. Long ranges scan the user's
+     * columns; the current-month card above stays on the date index, which
+     * only touches that month's entries.
+     */
+    public static double getAverageSoilHealth(int userId, LocalDate from, LocalDate to) {
+        return measurements(userId).aggregate((int) from.toEpochDay(), (int) to.toEpochDay())
+            .getMeanOf(HEALTH_COLUMNS);
+    }
+
+    // Per-day average of one measurement for a user's trend chart, NaN on days without samples
+    public static double[] getDailyAverages(int userId, ColumnarSoilStore.Column column, LocalDate from, LocalDate to) {
+        return measurements(userId).dailyAverages(column, (int) from.toEpochDay(), (int) to.toEpochDay());
+    }
+
+    private static class Restored {
+        final SoilAnalysis analysis;
+        final int userId;
+        final long key;
+
+        Restored(SoilAnalysis analysis, long key) {
+            this.analysis = analysis;
+            this.userId = analysis.getUserId();
+            this.key = key;
+        }
+    }
+
+    private static class HistoryEntry {
+        final int userId;
+        final long key;
+
+        HistoryEntry(int userId, long key) {
+            this.userId = userId;
+            this.key = key;
+        }
+    }
+}
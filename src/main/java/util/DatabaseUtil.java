@@ -1,15 +1,212 @@
 package util;
 
+import model.AnalysisPage;
+import model.DashboardStats;
 import model.User;
 import model.SoilAnalysis;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class DatabaseUtil {
-    private static final String DB_URL = "jdbc:sqlite:src/main/resources/database/soil_analysis.db";
-    private static Connection connection;
+    // soil.db.url points the application (or a test) at another database file
+    private static final String DB_URL =
+        System.getProperty("soil.db.url", "jdbc:sqlite:src/main/resources/database/soil_analysis.db");
+    private static final int READ_POOL_SIZE = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final long ACQUIRE_TIMEOUT_MS = 10_000;
+    private static final int DEFAULT_BULK_CHUNK_SIZE = 5_000;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String INSERT_ANALYSIS =
+        "INSERT INTO soil_analysis (user_id, date, type, description, status, " +
+        "ph, nitrogen, phosphorus, potassium, organic_matter, moisture, location, recommendations) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Dashboard queries; package-private so their query plans can be checked
+    static final String FIRST_PAGE_QUERY =
+        "SELECT * FROM soil_analysis WHERE user_id = ? ORDER BY date DESC, id DESC LIMIT ?";
+    static final String NEXT_PAGE_QUERY =
+        "SELECT * FROM soil_analysis WHERE user_id = ? AND (date, id) < (?, ?) ORDER BY date DESC, id DESC LIMIT ?";
+    static final String DASHBOARD_STATS_QUERY =
+        "SELECT TOTAL(CASE WHEN month >= ? THEN analysis_count END), TOTAL(pending_count), " +
+        "TOTAL(CASE WHEN month >= ? THEN health_sum END) / TOTAL(CASE WHEN month >= ? THEN health_count END) " +
+        "FROM user_monthly_stats WHERE user_id = ?";
+    private static final String MEASUREMENTS_QUERY =
+        "SELECT id, date, ph, nitrogen, phosphorus, potassium, organic_matter, moisture " +
+        "FROM soil_analysis WHERE user_id = ? ORDER BY date, id";
+    private static final String MEASUREMENT_COUNT_QUERY = "SELECT COUNT(*) FROM soil_analysis WHERE user_id = ?";
+    // bm25 weights follow the FTS columns: user_id, type, description, location, status, recommendations
+    private static final String SEARCH_QUERY =
+        "SELECT s.* FROM soil_analysis_fts f JOIN soil_analysis s ON s.id = f.rowid " +
+        "WHERE soil_analysis_fts MATCH ? " +
+        "ORDER BY bm25(soil_analysis_fts, 0.0, 3.0, 2.0, 3.0, 2.0, 1.0), s.id DESC LIMIT ?";
+    private static ConnectionPool pool;
+    /*
+     * Each user's measurements laid out column by column for the dashboard
+     * trend, read from the table on first use and then kept current by the
+     * save methods. Nothing here updates or deletes analyses, so inserts are
+     * the only change to follow.
+     */
+    private static final Map<Integer, ColumnarSoilStore> measurementsByUser = new ConcurrentHashMap<>();
+
+    /*
+     * Schema migrations, one array per version. PRAGMA user_version records the
+     * last version applied to a database file; on startup every newer step runs
+     * in its own transaction, so existing databases upgrade in place.
+     */
+    private static final String[][] MIGRATIONS = {
+        // 1: base tables
+        {
+            """
+            CREATE TABLE IF NOT EXISTS users (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                username TEXT UNIQUE NOT NULL,
+                password TEXT NOT NULL,
+                email TEXT UNIQUE NOT NULL,
+                full_name TEXT NOT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS soil_analysis (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                user_id INTEGER NOT NULL,
+                date TEXT NOT NULL,
+                type TEXT NOT NULL,
+                description TEXT,
+                status TEXT NOT NULL,
+                ph REAL,
+                nitrogen REAL,
+                phosphorus REAL,
+                potassium REAL,
+                organic_matter REAL,
+                moisture REAL,
+                location TEXT,
+                recommendations TEXT,
+                FOREIGN KEY (user_id) REFERENCES users(id)
+            )
+            """
+        },
+        // 2: dashboard access paths. (user_id, date, id) serves the history pages, ordered
+        // by (date, id), straight off the index without a sort, and the health columns
+        // it carries answer range averages from the index alone
+        {
+            """
+            CREATE INDEX IF NOT EXISTS idx_soil_analysis_user_date
+            ON soil_analysis (user_id, date, id, ph, nitrogen, phosphorus, potassium, organic_matter, moisture)
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_soil_analysis_user_status ON soil_analysis (user_id, status)",
+            "ANALYZE"
+        },
+        // 3: full-text index for searchAnalyses, an external-content FTS5 table kept in
+        // step with soil_analysis by triggers and back-filled with 'rebuild'. user_id is
+        // indexed as a token so the per-user filter is applied inside the match itself
+        {
+            """
+            CREATE VIRTUAL TABLE IF NOT EXISTS soil_analysis_fts USING fts5 (
+                user_id, type, description, location, status, recommendations,
+                content = 'soil_analysis', content_rowid = 'id', prefix = '2 3 4'
+            )
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS soil_analysis_fts_insert AFTER INSERT ON soil_analysis BEGIN
+                INSERT INTO soil_analysis_fts (rowid, user_id, type, description, location, status, recommendations)
+                VALUES (new.id, new.user_id, new.type, new.description, new.location, new.status, new.recommendations);
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS soil_analysis_fts_delete AFTER DELETE ON soil_analysis BEGIN
+                INSERT INTO soil_analysis_fts (soil_analysis_fts, rowid, user_id, type, description, location, status, recommendations)
+                VALUES ('delete', old.id, old.user_id, old.type, old.description, old.location, old.status, old.recommendations);
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS soil_analysis_fts_update AFTER UPDATE ON soil_analysis BEGIN
+                INSERT INTO soil_analysis_fts (soil_analysis_fts, rowid, user_id, type, description, location, status, recommendations)
+                VALUES ('delete', old.id, old.user_id, old.type, old.description, old.location, old.status, old.recommendations);
+                INSERT INTO soil_analysis_fts (rowid, user_id, type, description, location, status, recommendations)
+                VALUES (new.id, new.user_id, new.type, new.description, new.location, new.status, new.recommendations);
+            END
+            """,
+            "INSERT INTO soil_analysis_fts (soil_analysis_fts) VALUES ('rebuild')"
+        },
+        // 4: per-user monthly rollup behind the dashboard cards. Triggers fold every
+        // insert, update and delete into it within the writing statement, so the
+        // cards read a few rows per user however many analyses they have
+        {
+            """
+            CREATE TABLE IF NOT EXISTS user_monthly_stats (
+                user_id INTEGER NOT NULL,
+                month TEXT NOT NULL,
+                analysis_count INTEGER NOT NULL,
+                pending_count INTEGER NOT NULL,
+                health_sum REAL NOT NULL,
+                health_count INTEGER NOT NULL,
+                PRIMARY KEY (user_id, month)
+            ) WITHOUT ROWID
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS user_monthly_stats_insert AFTER INSERT ON soil_analysis BEGIN
+                INSERT INTO user_monthly_stats (user_id, month, analysis_count, pending_count, health_sum, health_count)
+                VALUES (new.user_id, substr(new.date, 1, 7), 1, new.status = 'Pending',
+                        coalesce((new.ph + new.nitrogen + new.phosphorus + new.potassium + new.organic_matter + new.moisture) / 6.0, 0),
+                        (new.ph + new.nitrogen + new.phosphorus + new.potassium + new.organic_matter + new.moisture) / 6.0 IS NOT NULL)
+                ON CONFLICT (user_id, month) DO UPDATE SET
+                    analysis_count = analysis_count + 1,
+                    pending_count = pending_count + excluded.pending_count,
+                    health_sum = health_sum + excluded.health_sum,
+                    health_count = health_count + excluded.health_count;
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS user_monthly_stats_delete AFTER DELETE ON soil_analysis BEGIN
+                UPDATE user_monthly_stats SET
+                    analysis_count = analysis_count - 1,
+                    pending_count = pending_count - (old.status = 'Pending'),
+                    health_sum = health_sum - coalesce((old.ph + old.nitrogen + old.phosphorus + old.potassium + old.organic_matter + old.moisture) / 6.0, 0),
+                    health_count = health_count - ((old.ph + old.nitrogen + old.phosphorus + old.potassium + old.organic_matter + old.moisture) / 6.0 IS NOT NULL)
+                WHERE user_id = old.user_id AND month = substr(old.date, 1, 7);
+                DELETE FROM user_monthly_stats
+                WHERE user_id = old.user_id AND month = substr(old.date, 1, 7) AND analysis_count = 0;
+            END
+            """,
+            """
+            CREATE TRIGGER IF NOT EXISTS user_monthly_stats_update
+            AFTER UPDATE OF user_id, date, status, ph, nitrogen, phosphorus, potassium, organic_matter, moisture
+            ON soil_analysis BEGIN
+                UPDATE user_monthly_stats SET
+                    analysis_count = analysis_count - 1,
+                    pending_count = pending_count - (old.status = 'Pending'),
+                    health_sum = health_sum - coalesce((old.ph + old.nitrogen + old.phosphorus + old.potassium + old.organic_matter + old.moisture) / 6.0, 0),
+                    health_count = health_count - ((old.ph + old.nitrogen + old.phosphorus + old.potassium + old.organic_matter + old.moisture) / 6.0 IS NOT NULL)
+                WHERE user_id = old.user_id AND month = substr(old.date, 1, 7);
+                DELETE FROM user_monthly_stats
+                WHERE user_id = old.user_id AND month = substr(old.date, 1, 7) AND analysis_count = 0;
+                INSERT INTO user_monthly_stats (user_id, month, analysis_count, pending_count, health_sum, health_count)
+                VALUES (new.user_id, substr(new.date, 1, 7), 1, new.status = 'Pending',
+                        coalesce((new.ph + new.nitrogen + new.phosphorus + new.potassium + new.organic_matter + new.moisture) / 6.0, 0),
+                        (new.ph + new.nitrogen + new.phosphorus + new.potassium + new.organic_matter + new.moisture) / 6.0 IS NOT NULL)
+                ON CONFLICT (user_id, month) DO UPDATE SET
+                    analysis_count = analysis_count + 1,
+                    pending_count = pending_count + excluded.pending_count,
+                    health_sum = health_sum + excluded.health_sum,
+                    health_count = health_count + excluded.health_count;
+            END
+            """,
+            """
+            INSERT INTO user_monthly_stats (user_id, month, analysis_count, pending_count, health_sum, health_count)
+            SELECT user_id, substr(date, 1, 7), COUNT(*), TOTAL(status = 'Pending'),
+                   TOTAL((ph + nitrogen + phosphorus + potassium + organic_matter + moisture) / 6.0), COUNT((ph + nitrogen + phosphorus + potassium + organic_matter + moisture) / 6.0)
+            FROM soil_analysis
+            GROUP BY user_id, substr(date, 1, 7)
+            """
+        }
+    };
+    static final int SCHEMA_VERSION = MIGRATIONS.length;
 
     static {
         try {
@@ -19,9 +216,9 @@ public class DatabaseUtil {
                 dbDir.mkdirs();
             }
             
-            // Initialize database connection
+            // Initialize connection pool
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection(DB_URL);
+            pool = new ConnectionPool(DB_URL, StorageProfile.fromSystemProperties(), READ_POOL_SIZE, ACQUIRE_TIMEOUT_MS);
             initializeDatabase();
         } catch (Exception e) {
             e.printStackTrace();
@@ -29,49 +226,40 @@ public class DatabaseUtil {
     }
 
     private static void initializeDatabase() throws SQLException {
-        // Create users table
-        try (Statement stmt = connection.createStatement()) {
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS users (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT UNIQUE NOT NULL,
-                    password TEXT NOT NULL,
-                    email TEXT UNIQUE NOT NULL,
-                    full_name TEXT NOT NULL,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-            """);
-
-            // Create soil_analysis table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS soil_analysis (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    user_id INTEGER NOT NULL,
-                    date TEXT NOT NULL,
-                    type TEXT NOT NULL,
-                    description TEXT,
-                    status TEXT NOT NULL,
-                    ph REAL,
-                    nitrogen REAL,
-                    phosphorus REAL,
-                    potassium REAL,
-                    organic_matter REAL,
-                    moisture REAL,
-                    location TEXT,
-                    recommendations TEXT,
-                    FOREIGN KEY (user_id) REFERENCES users(id)
-                )
-            """);
+        try (ConnectionPool.Lease lease = pool.write()) {
+            migrate(lease.connection());
         }
     }
 
-    private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+    // Brings the database on conn up to SCHEMA_VERSION; package-private so migrations can be tested on their own file
+    static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        for (int next = version + 1; next <= MIGRATIONS.length; next++) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : MIGRATIONS[next - 1]) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("PRAGMA user_version = " + next);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration to version " + next + " failed", e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
     }
 
     public static User authenticateUser(String username, String password) {
         String query = "SELECT * FROM users WHERE username = ? AND password = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(query)) {
             pstmt.setString(1, username);
             pstmt.setString(2, password); // Note: In production, use proper password hashing
             ResultSet rs = pstmt.executeQuery();
@@ -94,7 +282,8 @@ public class DatabaseUtil {
 
     public static boolean registerUser(User user) {
         String query = "INSERT INTO users (username, password, full_name, email, role) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+        try (ConnectionPool.Lease lease = pool.write();
+             PreparedStatement pstmt = lease.connection().prepareStatement(query)) {
             pstmt.setString(1, user.getUsername());
             pstmt.setString(2, user.getPassword());
             pstmt.setString(3, user.getFullName());
@@ -108,195 +297,358 @@ public class DatabaseUtil {
     }
 
     public static void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    public static ConnectionPool.Metrics getPoolMetrics() {
+        return pool.getMetrics();
+    }
+
+    // A fresh, modifiable list, as callers such as the dashboard sort it in place
+    public static List<SoilAnalysis> getRecentAnalyses(int userId) {
+        return new ArrayList<>(getAnalysesPage(userId, null, 10).getAnalyses());
+    }
+
+    /*
+     * One page of a user's history, newest first. Pass null for the first page
+     * and the returned page's next cursor for each following one. The cursor is
+     * the (date, id) of the last row seen, so every page is a seek into
+     * idx_soil_analysis_user_date rather than an OFFSET that rescans the rows
+     * before it, and rows saved meanwhile never shift or repeat entries.
+     */
+    public static AnalysisPage getAnalysesPage(int userId, AnalysisPage.Cursor after, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        List<SoilAnalysis> analyses = new ArrayList<>();
+        String query = after == null ? FIRST_PAGE_QUERY : NEXT_PAGE_QUERY;
+
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(query)) {
+            int index = 1;
+            pstmt.setInt(index++, userId);
+            if (after != null) {
+                pstmt.setString(index++, after.getDate());
+                pstmt.setInt(index++, after.getId());
+            }
+            // One extra row tells us whether another page exists
+            pstmt.setInt(index, pageSize + 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    analyses.add(readAnalysis(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+
+        if (analyses.size() <= pageSize) {
+            return new AnalysisPage(analyses, null);
+        }
+        analyses.remove(pageSize);
+        return new AnalysisPage(analyses, AnalysisPage.Cursor.after(analyses.get(pageSize - 1)));
     }
 
-    public static List<SoilAnalysis> getRecentAnalyses(int userId) {
-        List<SoilAnalysis> analyses = new ArrayList<>();
-        String query = "SELECT * FROM soil_analysis WHERE user_id = ? ORDER BY date DESC LIMIT 10";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    /*
+     * Streams a user's history, newest first, to the callback one row at a time
+     * so exports and comparisons run in constant memory. A read connection is
+     * held until the scan finishes, so keep the callback short and don't call
+     * back into DatabaseUtil's write methods from it.
+     */
+    public static void forEachAnalysis(int userId, Consumer<SoilAnalysis> consumer) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(
+                 "SELECT * FROM soil_analysis WHERE user_id = ? ORDER BY date DESC, id DESC")) {
             pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(readAnalysis(rs));
+                }
+            }
+        }
+    }
+
+    // Every user's analyses, newest first, streamed the same way
+    public static void forEachAnalysis(Consumer<SoilAnalysis> consumer) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(
+                 "SELECT * FROM soil_analysis ORDER BY date DESC, id DESC");
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                analyses.add(new SoilAnalysis(
-                    rs.getInt("id"),
-                    rs.getInt("user_id"),
-                    rs.getString("date"),
-                    rs.getString("type"),
-                    rs.getString("description"),
-                    rs.getString("status"),
-                    rs.getDouble("ph"),
-                    rs.getDouble("nitrogen"),
-                    rs.getDouble("phosphorus"),
-                    rs.getDouble("potassium"),
-                    rs.getDouble("organic_matter"),
-                    rs.getDouble("moisture"),
-                    rs.getString("location"),
-                    rs.getString("recommendations")
-                ));
+                consumer.accept(readAnalysis(rs));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return analyses;
+    }
+
+    private static SoilAnalysis readAnalysis(ResultSet rs) throws SQLException {
+        return new SoilAnalysis(
+            rs.getInt("id"),
+            rs.getInt("user_id"),
+            rs.getString("date"),
+            rs.getString("type"),
+            rs.getString("description"),
+            rs.getString("status"),
+            rs.getDouble("ph"),
+            rs.getDouble("nitrogen"),
+            rs.getDouble("phosphorus"),
+            rs.getDouble("potassium"),
+            rs.getDouble("organic_matter"),
+            rs.getDouble("moisture"),
+            rs.getString("location"),
+            rs.getString("recommendations")
+        );
     }
 
     public static boolean saveSoilAnalysis(SoilAnalysis analysis) {
-        String query = "INSERT INTO soil_analysis (user_id, date, type, description, status, " +
-                      "ph, nitrogen, phosphorus, potassium, organic_matter, moisture, location, recommendations) " +
-                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, analysis.getUserId());
-            pstmt.setString(2, analysis.getDate());
-            pstmt.setString(3, analysis.getType());
-            pstmt.setString(4, analysis.getDescription());
-            pstmt.setString(5, analysis.getStatus());
-            pstmt.setDouble(6, analysis.getPh());
-            pstmt.setDouble(7, analysis.getNitrogen());
-            pstmt.setDouble(8, analysis.getPhosphorus());
-            pstmt.setDouble(9, analysis.getPotassium());
-            pstmt.setDouble(10, analysis.getOrganicMatter());
-            pstmt.setDouble(11, analysis.getMoisture());
-            pstmt.setString(12, analysis.getLocation());
-            pstmt.setString(13, analysis.getRecommendations());
-            
-            return pstmt.executeUpdate() > 0;
+        int id;
+        try (ConnectionPool.Lease lease = pool.write();
+             PreparedStatement pstmt = lease.connection().prepareStatement(INSERT_ANALYSIS);
+             PreparedStatement lastId = lease.connection().prepareStatement("SELECT last_insert_rowid()")) {
+            bindAnalysis(pstmt, analysis);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            try (ResultSet rs = lastId.executeQuery()) {
+                rs.next();
+                id = rs.getInt(1);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
+        addMeasurements(id, analysis);
+        return true;
     }
 
-    public static int getAnalysisCount(int userId) {
-        String query = "SELECT COUNT(*) FROM soil_analysis WHERE user_id = ? AND date >= ?";
-        LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, userId);
-            pstmt.setString(2, monthStart.toString());
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
+    public static int[] saveSoilAnalyses(List<SoilAnalysis> analyses) throws SQLException {
+        return saveSoilAnalyses(analyses, DEFAULT_BULK_CHUNK_SIZE);
+    }
+
+    /*
+     * Inserts the analyses with one prepared statement, committing every
+     * chunkSize rows, and returns the generated ids in input order (also set
+     * on each analysis). If a chunk fails it is rolled back and the exception
+     * is rethrown; chunks committed before it stay saved and keep their ids.
+     */
+    public static int[] saveSoilAnalyses(List<SoilAnalysis> analyses, int chunkSize) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        int[] ids = new int[analyses.size()];
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_ANALYSIS);
+                 PreparedStatement lastId = conn.prepareStatement("SELECT last_insert_rowid()")) {
+                for (int from = 0; from < analyses.size(); from += chunkSize) {
+                    int to = Math.min(from + chunkSize, analyses.size());
+                    for (int i = from; i < to; i++) {
+                        bindAnalysis(pstmt, analyses.get(i));
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    // We hold the only write connection inside one transaction, so the
+                    // chunk's AUTOINCREMENT ids are consecutive and end at last_insert_rowid()
+                    int last;
+                    try (ResultSet rs = lastId.executeQuery()) {
+                        rs.next();
+                        last = rs.getInt(1);
+                    }
+                    conn.commit();
+                    for (int i = from; i < to; i++) {
+                        ids[i] = last - (to - 1 - i);
+                        analyses.get(i).setId(ids[i]);
+                        addMeasurements(ids[i], analyses.get(i));
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return 0;
+        return ids;
     }
 
-    public static int getActiveRecommendationsCount(int userId) {
-        String query = "SELECT COUNT(*) FROM soil_analysis WHERE user_id = ? AND status = 'Pending'";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    private static void bindAnalysis(PreparedStatement pstmt, SoilAnalysis analysis) throws SQLException {
+        pstmt.setInt(1, analysis.getUserId());
+        pstmt.setString(2, analysis.getDate());
+        pstmt.setString(3, analysis.getType());
+        pstmt.setString(4, analysis.getDescription());
+        pstmt.setString(5, analysis.getStatus());
+        pstmt.setDouble(6, analysis.getPh());
+        pstmt.setDouble(7, analysis.getNitrogen());
+        pstmt.setDouble(8, analysis.getPhosphorus());
+        pstmt.setDouble(9, analysis.getPotassium());
+        pstmt.setDouble(10, analysis.getOrganicMatter());
+        pstmt.setDouble(11, analysis.getMoisture());
+        pstmt.setString(12, analysis.getLocation());
+        pstmt.setString(13, analysis.getRecommendations());
+    }
+
+    /*
+     * The user's measurements dated within [from, to], oldest first, for
+     * per-day averages over the range. The first call for a user loads their
+     * rows; the range itself is a slice of the in-memory columns.
+     */
+    public static ColumnarSoilStore.Range measurementRange(int userId, LocalDate from, LocalDate to) {
+        return measurements(userId).range((int) from.toEpochDay(), (int) to.toEpochDay());
+    }
+
+    private static ColumnarSoilStore measurements(int userId) {
+        return measurementsByUser.computeIfAbsent(userId, DatabaseUtil::loadMeasurements);
+    }
+
+    // Sized from the user's row count and read in date order, so every row is an append
+    private static ColumnarSoilStore loadMeasurements(int userId) {
+        ColumnarSoilStore store = new ColumnarSoilStore();
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement count = lease.connection().prepareStatement(MEASUREMENT_COUNT_QUERY);
+             PreparedStatement pstmt = lease.connection().prepareStatement(MEASUREMENTS_QUERY)) {
+            count.setInt(1, userId);
+            try (ResultSet rs = count.executeQuery()) {
+                rs.next();
+                store = new ColumnarSoilStore(rs.getInt(1));
+            }
             pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Integer day = epochDay(rs.getString(2));
+                    if (day != null) {
+                        store.put(rs.getInt(1), day, rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                            rs.getDouble(6), rs.getDouble(7), rs.getDouble(8));
+                    }
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return 0;
+        return store;
+    }
+
+    /*
+     * Adds a saved row to its user's store if that store is loaded. Running
+     * inside computeIfPresent waits out a load in progress, so a row committed
+     * while the load was reading is added once it finishes (put overwrites by
+     * id if the load saw it too).
+     */
+    private static void addMeasurements(int id, SoilAnalysis analysis) {
+        Integer day = epochDay(analysis.getDate());
+        if (day == null) {
+            return;
+        }
+        measurementsByUser.computeIfPresent(analysis.getUserId(), (userId, store) -> {
+            store.put(id, day, analysis.getPh(), analysis.getNitrogen(), analysis.getPhosphorus(),
+                analysis.getPotassium(), analysis.getOrganicMatter(), analysis.getMoisture());
+            return store;
+        });
+    }
+
+    // Rows with a missing or malformed date have no place on a trend and are left out
+    private static Integer epochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    public static int getAnalysisCount(int userId) {
+        return getDashboardStats(userId).getAnalysisCount();
+    }
+
+    public static int getActiveRecommendationsCount(int userId) {
+        return getDashboardStats(userId).getPendingCount();
     }
 
     public static double getAverageSoilHealth(int userId) {
-        String query = "SELECT AVG((ph + nitrogen + phosphorus + potassium + organic_matter + moisture) / 6.0) " +
-                      "FROM soil_analysis WHERE user_id = ? AND date >= ?";
-        LocalDate monthStart = LocalDate.now().withDayOfMonth(1);
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, userId);
-            pstmt.setString(2, monthStart.toString());
+        return getDashboardStats(userId).getAverageSoilHealth();
+    }
+
+    /*
+     * All three dashboard cards from user_monthly_stats in one read: analyses
+     * and average health from this month on, and pending analyses overall.
+     * Cost depends on the number of months with data, not on the row count.
+     */
+    public static DashboardStats getDashboardStats(int userId) {
+        String query = DASHBOARD_STATS_QUERY;
+        String month = LocalDate.now().withDayOfMonth(1).toString().substring(0, 7);
+
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(query)) {
+            pstmt.setString(1, month);
+            pstmt.setString(2, month);
+            pstmt.setString(3, month);
+            pstmt.setInt(4, userId);
             ResultSet rs = pstmt.executeQuery();
-            
+
             if (rs.next()) {
-                return rs.getDouble(1);
+                // The average is NULL when there is nothing this month; getDouble reads it as 0
+                return new DashboardStats(rs.getInt(1), rs.getInt(2), rs.getDouble(3));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return 0.0;
+        return new DashboardStats(0, 0, 0.0);
     }
 
     public static List<SoilAnalysis> getAllAnalyses() throws SQLException {
         List<SoilAnalysis> analyses = new ArrayList<>();
-        String query = "SELECT * FROM soil_analysis ORDER BY date DESC";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-            
-            while (rs.next()) {
-                SoilAnalysis analysis = new SoilAnalysis(
-                    rs.getInt("id"),
-                    rs.getInt("user_id"),
-                    rs.getString("date"),
-                    rs.getString("type"),
-                    rs.getString("description"),
-                    rs.getString("status"),
-                    rs.getDouble("ph"),
-                    rs.getDouble("nitrogen"),
-                    rs.getDouble("phosphorus"),
-                    rs.getDouble("potassium"),
-                    rs.getDouble("organic_matter"),
-                    rs.getDouble("moisture"),
-                    rs.getString("location"),
-                    rs.getString("recommendations")
-                );
-                analyses.add(analysis);
-            }
-        }
-        
+        forEachAnalysis(analyses::add);
         return analyses;
     }
 
-    public static List<SoilAnalysis> searchAnalyses(int userId, String searchTerm) {
+    /*
+     * The user's analyses matching every word of searchTerm as a prefix, best
+     * first, at most limit of them. Ranking is bm25 inside SQLite, weighted
+     * so location and type count most and recommendations least; ties go to
+     * the newest row. Only the rows returned are read from soil_analysis.
+     */
+    public static List<SoilAnalysis> searchAnalyses(int userId, String searchTerm, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
         List<SoilAnalysis> analyses = new ArrayList<>();
-        String query = "SELECT * FROM soil_analysis WHERE user_id = ? AND " +
-                      "(type LIKE ? OR description LIKE ? OR location LIKE ? OR status LIKE ?) " +
-                      "ORDER BY date DESC";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            String searchPattern = "%" + searchTerm + "%";
-            pstmt.setInt(1, userId);
-            pstmt.setString(2, searchPattern);
-            pstmt.setString(3, searchPattern);
-            pstmt.setString(4, searchPattern);
-            pstmt.setString(5, searchPattern);
-            
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                analyses.add(new SoilAnalysis(
-                    rs.getInt("id"),
-                    rs.getInt("user_id"),
-                    rs.getString("date"),
-                    rs.getString("type"),
-                    rs.getString("description"),
-                    rs.getString("status"),
-                    rs.getDouble("ph"),
-                    rs.getDouble("nitrogen"),
-                    rs.getDouble("phosphorus"),
-                    rs.getDouble("potassium"),
-                    rs.getDouble("organic_matter"),
-                    rs.getDouble("moisture"),
-                    rs.getString("location"),
-                    rs.getString("recommendations")
-                ));
+        List<String> words = searchWords(searchTerm);
+        if (words.isEmpty()) {
+            return analyses;
+        }
+
+        StringBuilder match = new StringBuilder("user_id : \"").append(userId)
+            .append("\" AND {type description location status recommendations} : (");
+        for (String word : words) {
+            match.append(" \"").append(word).append("\"*");
+        }
+        match.append(")");
+
+        try (ConnectionPool.Lease lease = pool.read();
+             PreparedStatement pstmt = lease.connection().prepareStatement(SEARCH_QUERY)) {
+            pstmt.setString(1, match.toString());
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    analyses.add(readAnalysis(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return analyses;
     }
-} 
\ No newline at end of file
+
+    // Search box text as lower-case words; each becomes a prefix term, so "fie nor"
+    // matches "Field B, North" and punctuation can't be read as FTS5 query syntax
+    private static List<String> searchWords(String searchTerm) {
+        List<String> words = new ArrayList<>();
+        for (String word : NON_WORD.split(searchTerm.toLowerCase())) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
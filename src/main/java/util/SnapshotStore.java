@@ -0,0 +1,441 @@
+package util;
+
+import model.SoilAnalysis;
+import model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+ * Binary persistence for DataManager: a snapshot of every user and analysis
+ * plus an append-only journal of the saves made since. Files carry a
+ * generation number. Taking a snapshot first switches appends to the next
+ * journal generation, then writes snapshot-<gen> beside it and deletes the
+ * older files. Startup loads the newest complete snapshot and replays every
+ * journal from its generation on.
+ *
+ * Each record is [length][crc32][body], where the body is a type byte ('U'
+ * or 'A') followed by the fields. Every record is a whole upsert, so
+ * replaying a save the snapshot already holds is harmless. Replay stops at
+ * the first short or corrupt record, which is how a save torn by a crash
+ * shows up.
+ */
+public class SnapshotStore implements AutoCloseable {
+    private static final byte USER = 'U';
+    private static final byte ANALYSIS = 'A';
+    private static final int SNAPSHOT_MAGIC = 0x534E4150; // "SNAP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    // Replay maps files in windows so journals past 2 GiB still work
+    private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+    // Distinct strings shared while loading; dates, statuses and recommendation texts repeat heavily
+    private static final int MAX_SHARED_STRINGS = 1 << 16;
+    private static final Pattern FILE_NAME = Pattern.compile("(snapshot|journal)-(\\d+)\\.bin");
+
+    public interface Sink {
+        void user(User user);
+        void analysis(SoilAnalysis analysis);
+    }
+
+    private final Path directory;
+    private final boolean fsync;
+    // Saves hold the read side while they journal and apply a change, and snapshot rotation
+    // takes the write side, so no save can land in the old journal after it has been sealed
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private long generation;
+    private FileOutputStream journalFile;
+    private RecordWriter journal;
+    private long recordsSinceSnapshot;
+    private ScheduledExecutorService snapshotter;
+
+    public SnapshotStore(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+    }
+
+    /*
+     * Replays the newest snapshot and the journals after it into the sink, then
+     * opens the latest journal for appending. Returns the number of records read.
+     */
+    public synchronized long load(Sink sink) throws IOException {
+        TreeSet<Long> snapshots = new TreeSet<>();
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) {
+                    long gen = Long.parseLong(matcher.group(2));
+                    if (matcher.group(1).equals("snapshot")) {
+                        snapshots.add(gen);
+                    } else {
+                        journals.put(gen, file);
+                    }
+                } else if (name.startsWith("snapshot-") && name.endsWith(".tmp")) {
+                    // Left by a snapshot the process exited in the middle of
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        Map<String, String> strings = new HashMap<>();
+        long[] records = new long[1];
+        Sink counting = new Sink() {
+            public void user(User user) { records[0]++; sink.user(user); }
+            public void analysis(SoilAnalysis analysis) { records[0]++; sink.analysis(analysis); }
+        };
+
+        generation = snapshots.isEmpty() ? 0 : snapshots.last();
+        if (!snapshots.isEmpty()) {
+            long end = replay(snapshotPath(generation), 8, counting, strings);
+            if (end != Files.size(snapshotPath(generation))) {
+                throw new IOException("Snapshot " + snapshotPath(generation) + " is damaged at byte " + end);
+            }
+        }
+        long validJournalBytes = 0;
+        for (var entry : journals.tailMap(generation).entrySet()) {
+            generation = entry.getKey();
+            validJournalBytes = replay(entry.getValue(), 0, counting, strings);
+        }
+
+        // Cut off a torn final record before appending after it
+        Path current = journalPath(generation);
+        if (Files.exists(current) && Files.size(current) > validJournalBytes) {
+            try (FileChannel channel = FileChannel.open(current, StandardOpenOption.WRITE)) {
+                channel.truncate(validJournalBytes);
+            }
+        }
+        openJournal();
+        recordsSinceSnapshot = records[0];
+        return records[0];
+    }
+
+    // Feeds the records from offset on to the sink; returns the offset just past the last good one
+    private static long replay(Path file, long offset, Sink sink, Map<String, String> strings) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (offset > 0) {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                if (size < 8 || channel.read(header, 0) < 8
+                        || header.getInt(0) != SNAPSHOT_MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                    throw new IOException("Not a snapshot file: " + file);
+                }
+            }
+
+            long position = offset;
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            byte[] body = new byte[256];
+            CRC32 crc = new CRC32();
+            while (position + 8 <= size) {
+                if (window == null || position + 8 > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, size - position));
+                }
+                window.position((int) (position - windowStart));
+                int length = window.getInt();
+                int checksum = window.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || position + 8 + length > size) {
+                    break;
+                }
+                if (window.remaining() < length) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(Math.max(MAP_WINDOW_BYTES, 8L + length), size - position));
+                    window.position(8);
+                }
+                if (body.length < length) {
+                    body = new byte[Math.max(length, body.length * 2)];
+                }
+                window.get(body, 0, length);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                decode(ByteBuffer.wrap(body, 0, length), sink, strings);
+                position += 8 + length;
+            }
+            return position;
+        }
+    }
+
+    private static void decode(ByteBuffer in, Sink sink, Map<String, String> strings) {
+        byte type = in.get();
+        if (type == USER) {
+            sink.user(new User(in.getInt(), readString(in, strings), readString(in, strings),
+                    readString(in, strings), readString(in, strings), readString(in, strings)));
+        } else if (type == ANALYSIS) {
+            sink.analysis(new SoilAnalysis(in.getInt(), in.getInt(), readString(in, strings),
+                    readString(in, strings), readString(in, strings), readString(in, strings),
+                    in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                    readString(in, strings), readString(in, strings)));
+        }
+    }
+
+    // Returns one shared instance per distinct value, so a million analyses don't
+    // each carry their own copy of the same date or recommendation text
+    private static String readString(ByteBuffer in, Map<String, String> strings) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        String shared = strings.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (strings.size() < MAX_SHARED_STRINGS) {
+            strings.put(value, value);
+        }
+        return value;
+    }
+
+    /*
+     * Runs a change to DataManager's maps. Appends made inside it go to the
+     * journal that is current for the whole change, and a snapshot waits for
+     * it to finish.
+     */
+    public void mutate(Runnable change) {
+        rotationLock.readLock().lock();
+        try {
+            change.run();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    public synchronized void appendUser(User user) {
+        try {
+            journal.user(user);
+            flushJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void appendAnalysis(SoilAnalysis analysis) {
+        try {
+            journal.analysis(analysis);
+            flushJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Flushing each save to the OS survives a process crash; fsync also survives power loss
+    private void flushJournal() throws IOException {
+        journal.flush();
+        if (fsync) {
+            journalFile.getFD().sync();
+        }
+        recordsSinceSnapshot++;
+    }
+
+    /*
+     * Seals the current journal, writes everything to a new snapshot and
+     * removes the files it replaces. Saves only wait for the journal switch;
+     * the snapshot itself is written while they carry on, and anything they
+     * change meanwhile is also in the new journal, which replays on top.
+     */
+    public void snapshot(Collection<User> users, Collection<SoilAnalysis> analyses) throws IOException {
+        long snapshotGeneration;
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeJournal();
+                snapshotGeneration = ++generation;
+                recordsSinceSnapshot = 0;
+                openJournal();
+            }
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+
+        Path temp = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            RecordWriter writer = new RecordWriter(file);
+            writer.out.writeInt(SNAPSHOT_MAGIC);
+            writer.out.writeInt(FORMAT_VERSION);
+            for (User user : users) {
+                writer.user(user);
+            }
+            for (SoilAnalysis analysis : analyses) {
+                writer.analysis(analysis);
+            }
+            writer.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, snapshotPath(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(2)) < snapshotGeneration) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /*
+     * Takes a snapshot every intervalSeconds on a daemon thread, skipping
+     * rounds with nothing new in the journal.
+     */
+    public void startSnapshots(long intervalSeconds, Supplier<Collection<User>> users,
+                               Supplier<Collection<SoilAnalysis>> analyses) {
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "data-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                if (getRecordsSinceSnapshot() > 0) {
+                    snapshot(users.get(), analyses.get());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized long getRecordsSinceSnapshot() { return recordsSinceSnapshot; }
+
+    public Path getDirectory() { return directory; }
+
+    private void openJournal() throws IOException {
+        journalFile = new FileOutputStream(journalPath(generation).toFile(), true);
+        journal = new RecordWriter(journalFile);
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.flush();
+            journalFile.getFD().sync();
+            journalFile.close();
+            journal = null;
+        }
+    }
+
+    private Path snapshotPath(long gen) {
+        return directory.resolve("snapshot-" + gen + ".bin");
+    }
+
+    private Path journalPath(long gen) {
+        return directory.resolve("journal-" + gen + ".bin");
+    }
+
+    @Override
+    public void close() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        rotationLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                closeJournal();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+    }
+
+    // Encodes records into a buffered stream; not thread-safe, each file gets its own
+    private static class RecordWriter {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream body = new DataOutputStream(bytes);
+        private final CRC32 crc = new CRC32();
+
+        RecordWriter(FileOutputStream file) {
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+        }
+
+        void user(User user) throws IOException {
+            bytes.reset();
+            body.writeByte(USER);
+            body.writeInt(user.getId());
+            writeString(user.getUsername());
+            writeString(user.getPassword());
+            writeString(user.getFullName());
+            writeString(user.getEmail());
+            writeString(user.getRole());
+            finishRecord();
+        }
+
+        void analysis(SoilAnalysis analysis) throws IOException {
+            bytes.reset();
+            body.writeByte(ANALYSIS);
+            body.writeInt(analysis.getId());
+            body.writeInt(analysis.getUserId());
+            writeString(analysis.getDate());
+            writeString(analysis.getType());
+            writeString(analysis.getDescription());
+            writeString(analysis.getStatus());
+            body.writeDouble(analysis.getPh());
+            body.writeDouble(analysis.getNitrogen());
+            body.writeDouble(analysis.getPhosphorus());
+            body.writeDouble(analysis.getPotassium());
+            body.writeDouble(analysis.getOrganicMatter());
+            body.writeDouble(analysis.getMoisture());
+            writeString(analysis.getLocation());
+            writeString(analysis.getRecommendations());
+            finishRecord();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                body.writeInt(-1);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            body.writeInt(encoded.length);
+            body.write(encoded);
+        }
+
+        private void finishRecord() throws IOException {
+            body.flush();
+            byte[] record = bytes.toByteArray();
+            crc.reset();
+            crc.update(record);
+            out.writeInt(record.length);
+            out.writeInt((int) crc.getValue());
+            out.write(record);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
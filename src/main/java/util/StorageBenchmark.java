@@ -0,0 +1,124 @@
+package util;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compares insert and concurrent read throughput of the storage profiles on a scratch database.
+// Usage: StorageBenchmark [inserts] [reader threads] [mixed phase seconds]
+public class StorageBenchmark {
+    private static final String INSERT =
+        "INSERT INTO soil_analysis (user_id, date, type, status, ph, nitrogen, phosphorus, potassium, " +
+        "organic_matter, moisture, location) VALUES (?, ?, 'Standard Analysis', ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String READ =
+        "SELECT COUNT(*), AVG(ph) FROM soil_analysis WHERE user_id = ? AND date >= ?";
+
+    public static void main(String[] args) throws Exception {
+        int inserts = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("%-8s %14s %18s %18s%n", "profile", "inserts/s", "mixed reads/s", "mixed writes/s");
+        for (StorageProfile profile : new StorageProfile[] { StorageProfile.LEGACY, StorageProfile.TUNED }) {
+            run(profile, inserts, readers, seconds);
+        }
+    }
+
+    private static void run(StorageProfile profile, int inserts, int readers, int seconds) throws Exception {
+        File dbFile = File.createTempFile("soil-bench-" + profile.getName(), ".db");
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile.getPath(), profile, readers, 30_000)) {
+            try (ConnectionPool.Lease lease = pool.write();
+                 Statement stmt = lease.connection().createStatement()) {
+                stmt.execute("""
+                    CREATE TABLE soil_analysis (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        user_id INTEGER NOT NULL,
+                        date TEXT NOT NULL,
+                        type TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        ph REAL, nitrogen REAL, phosphorus REAL, potassium REAL,
+                        organic_matter REAL, moisture REAL, location TEXT
+                    )
+                """);
+            }
+
+            // Phase 1: one autocommit insert per row, the way saveSoilAnalysis writes
+            long start = System.nanoTime();
+            for (int i = 0; i < inserts; i++) {
+                insert(pool, i);
+            }
+            double insertRate = inserts * 1e9 / (System.nanoTime() - start);
+
+            // Phase 2: dashboard-style reads while a writer keeps saving
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder reads = new LongAdder();
+            LongAdder writes = new LongAdder();
+            Thread[] threads = new Thread[readers + 1];
+            threads[0] = new Thread(() -> {
+                int i = inserts;
+                while (running.get()) {
+                    try {
+                        insert(pool, i++);
+                        writes.increment();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            for (int r = 1; r <= readers; r++) {
+                final int userId = r;
+                threads[r] = new Thread(() -> {
+                    while (running.get()) {
+                        try (ConnectionPool.Lease lease = pool.read();
+                             PreparedStatement pstmt = lease.connection().prepareStatement(READ)) {
+                            pstmt.setInt(1, userId);
+                            pstmt.setString(2, "2024-01-01");
+                            try (ResultSet rs = pstmt.executeQuery()) {
+                                rs.next();
+                            }
+                            reads.increment();
+                        } catch (SQLException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            Thread.sleep(seconds * 1000L);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            System.out.printf("%-8s %14.0f %18.0f %18.0f%n", profile.getName(), insertRate,
+                    reads.sum() / (double) seconds, writes.sum() / (double) seconds);
+        } finally {
+            for (String suffix : new String[] { "", "-wal", "-shm" }) {
+                new File(dbFile.getPath() + suffix).delete();
+            }
+        }
+    }
+
+    private static void insert(ConnectionPool pool, int i) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write();
+             PreparedStatement pstmt = lease.connection().prepareStatement(INSERT)) {
+            pstmt.setInt(1, 1 + i % 8);
+            pstmt.setString(2, String.format("2024-%02d-%02d", 1 + i % 12, 1 + i % 28));
+            pstmt.setString(3, i % 5 == 0 ? "Pending" : "Completed");
+            pstmt.setDouble(4, 5.5 + (i % 20) / 10.0);
+            pstmt.setDouble(5, 30 + i % 50);
+            pstmt.setDouble(6, 20 + i % 40);
+            pstmt.setDouble(7, 40 + i % 60);
+            pstmt.setDouble(8, 2 + (i % 30) / 10.0);
+            pstmt.setDouble(9, 20 + i % 20);
+            pstmt.setString(10, "Field " + (i % 50));
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+public class StorageProfile {
+    public enum JournalMode { DELETE, TRUNCATE, WAL }
+    public enum Synchronous { OFF, NORMAL, FULL }
+    public enum TempStore { DEFAULT, FILE, MEMORY }
+
+    // SQLite's out-of-the-box behaviour: rollback journal, fsync on every commit
+    public static final StorageProfile LEGACY =
+        new StorageProfile("legacy", JournalMode.DELETE, Synchronous.FULL, 2 * 1024, 0, TempStore.DEFAULT, 0);
+
+    // WAL lets readers run alongside the writer; NORMAL only fsyncs the WAL at checkpoints
+    public static final StorageProfile TUNED =
+        new StorageProfile("tuned", JournalMode.WAL, Synchronous.NORMAL, 64 * 1024, 256L * 1024 * 1024, TempStore.MEMORY, 30);
+
+    private final String name;
+    private final JournalMode journalMode;
+    private final Synchronous synchronous;
+    private final int cacheSizeKib;
+    private final long mmapSizeBytes;
+    private final TempStore tempStore;
+    private final int checkpointIntervalSeconds;
+
+    public StorageProfile(String name, JournalMode journalMode, Synchronous synchronous, int cacheSizeKib,
+                          long mmapSizeBytes, TempStore tempStore, int checkpointIntervalSeconds) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSizeKib = cacheSizeKib;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.tempStore = tempStore;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    /*
+     * Picks the base profile from -Dsoil.db.profile=legacy|tuned (tuned by default)
+     * and lets individual settings be overridden, e.g. -Dsoil.db.synchronous=FULL.
+     */
+    public static StorageProfile fromSystemProperties() {
+        StorageProfile base = "legacy".equalsIgnoreCase(System.getProperty("soil.db.profile")) ? LEGACY : TUNED;
+        return new StorageProfile(
+            base.name,
+            JournalMode.valueOf(property("soil.db.journalMode", base.journalMode.name())),
+            Synchronous.valueOf(property("soil.db.synchronous", base.synchronous.name())),
+            Integer.getInteger("soil.db.cacheSizeKib", base.cacheSizeKib),
+            Long.getLong("soil.db.mmapSize", base.mmapSizeBytes),
+            TempStore.valueOf(property("soil.db.tempStore", base.tempStore.name())),
+            Integer.getInteger("soil.db.checkpointIntervalSeconds", base.checkpointIntervalSeconds)
+        );
+    }
+
+    private static String property(String key, String defaultValue) {
+        return System.getProperty(key, defaultValue).toUpperCase(Locale.ROOT);
+    }
+
+    // journal_mode is persistent and needs a writable connection, so only the writer sets it
+    public void applyTo(Connection connection, boolean writer) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            if (writer) {
+                stmt.execute("PRAGMA journal_mode = " + journalMode.name());
+            }
+            stmt.execute("PRAGMA synchronous = " + synchronous.name());
+            stmt.execute("PRAGMA cache_size = -" + cacheSizeKib);
+            stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            stmt.execute("PRAGMA temp_store = " + tempStore.name());
+        }
+    }
+
+    public boolean usesBackgroundCheckpoints() {
+        return journalMode == JournalMode.WAL && checkpointIntervalSeconds > 0;
+    }
+
+    public String getName() { return name; }
+    public JournalMode getJournalMode() { return journalMode; }
+    public Synchronous getSynchronous() { return synchronous; }
+    public int getCacheSizeKib() { return cacheSizeKib; }
+    public long getMmapSizeBytes() { return mmapSizeBytes; }
+    public TempStore getTempStore() { return tempStore; }
+    public int getCheckpointIntervalSeconds() { return checkpointIntervalSeconds; }
+
+    @Override
+    public String toString() {
+        return "StorageProfile{" +
+                "name='" + name + '\'' +
+                ", journalMode=" + journalMode +
+                ", synchronous=" + synchronous +
+                ", cacheSizeKib=" + cacheSizeKib +
+                ", mmapSizeBytes=" + mmapSizeBytes +
+                ", tempStore=" + tempStore +
+                ", checkpointIntervalSeconds=" + checkpointIntervalSeconds +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package com.soilanalysis.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Many threads drawing from one generator
+public class IdGeneratorTest {
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 100_000;
+
+    @Test
+    public void concurrentIdsAreUniqueAndIncreasePerThread() throws Exception {
+        IdGenerator generator = new IdGenerator(5);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.next();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> seen = new HashSet<>(THREADS * IDS_PER_THREAD * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        assertTrue("Ids must increase within a thread", ids[i] > ids[i - 1]);
+                    }
+                    assertTrue("Duplicate id " + ids[i], seen.add(ids[i]));
+                    assertEquals(5, IdGenerator.node(ids[i]));
+                }
+            }
+            assertEquals(THREADS * IDS_PER_THREAD, seen.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void partsRoundTrip() {
+        IdGenerator generator = new IdGenerator(IdGenerator.MAX_NODE);
+        long before = System.currentTimeMillis();
+        long id = generator.next();
+        assertEquals(IdGenerator.MAX_NODE, IdGenerator.node(id));
+        assertTrue(IdGenerator.timestampMillis(id) >= before);
+        assertTrue(IdGenerator.sequence(id) >= 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodeOutOfRange() {
+        new IdGenerator(IdGenerator.MAX_NODE + 1);
+    }
+}
@@ -0,0 +1,242 @@
+package com.soilanalysis.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soilanalysis.model.SoilData;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The bundled rule sets against the if-chains they replaced, kept below as they were
+public class RuleEngineTest {
+    // Every threshold in the old chains; samples sit on them and one ulp either side
+    private static final double[] PH_EDGES = {5.5, 6.0, 7.5};
+    private static final double[] NITROGEN_EDGES = {40.0};
+    private static final double[] PHOSPHORUS_EDGES = {20.0, 30.0};
+    private static final double[] POTASSIUM_EDGES = {40.0, 150.0};
+    private static final double[] ORGANIC_MATTER_EDGES = {3.0};
+    private static final double[] MOISTURE_EDGES = {20.0, 35.0};
+    private static final double[] HEALTH_EDGES = {7.0};
+
+    @Test
+    public void analyzerRulesMatchTheOldChain() {
+        RuleSet rules = RuleEngine.get(RuleEngine.ANALYZER);
+        for (double[] s : samples()) {
+            List<String> fired = new ArrayList<>();
+            for (long bits = rules.evaluate(inputs(s)); bits != 0; bits &= bits - 1) {
+                RuleSet.Action action = rules.getAction(Long.numberOfTrailingZeros(bits));
+                fired.add(action.getName() + " / " + action.getPriority());
+            }
+            assertEquals(Arrays.toString(s), oldAnalyzerRecommendations(s), fired);
+        }
+    }
+
+    @Test
+    public void dataManagerRulesMatchTheOldChain() {
+        RuleSet rules = RuleEngine.get(RuleEngine.DATA_MANAGER);
+        for (double[] s : samples()) {
+            assertEquals(Arrays.toString(s), oldDataManagerRecommendations(s), texts(rules, rules.evaluate(inputs(s))));
+        }
+    }
+
+    @Test
+    public void entryFormRulesMatchTheOldChain() {
+        RuleSet rules = RuleEngine.get(RuleEngine.ENTRY_FORM);
+        for (double[] s : samples()) {
+            assertEquals(Arrays.toString(s), oldEntryFormRecommendations(s), texts(rules, rules.evaluate(inputs(s))));
+        }
+    }
+
+    @Test
+    public void compilesEveryComparison() throws IOException {
+        RuleSet rules = compile("{\"t\": ["
+            + "{\"input\": \"PH\", \"op\": \"<\", \"value\": 6, \"text\": \"lt\"},"
+            + "{\"input\": \"PH\", \"op\": \"<=\", \"value\": 6, \"text\": \"le\"},"
+            + "{\"input\": \"PH\", \"op\": \"==\", \"value\": 6, \"text\": \"eq\"},"
+            + "{\"input\": \"PH\", \"op\": \">=\", \"value\": 6, \"text\": \"ge\"},"
+            + "{\"input\": \"PH\", \"op\": \">\", \"value\": 6, \"text\": \"gt\"},"
+            + "{\"input\": \"SOIL_TYPE\", \"op\": \"==\", \"value\": \"SILTY\", \"text\": \"silty\"}]}").get("t");
+        double[] inputs = RuleSet.newInputs();
+        inputs[RuleSet.Input.PH.ordinal()] = 5.9;
+        assertEquals(List.of("lt", "le"), texts(rules, rules.evaluate(inputs)));
+        inputs[RuleSet.Input.PH.ordinal()] = 6.0;
+        assertEquals(List.of("le", "eq", "ge"), texts(rules, rules.evaluate(inputs)));
+        inputs[RuleSet.Input.PH.ordinal()] = 6.1;
+        inputs[RuleSet.Input.SOIL_TYPE.ordinal()] = RuleSet.soilType(SoilData.SoilType.SILTY);
+        assertEquals(List.of("ge", "gt", "silty"), texts(rules, rules.evaluate(inputs)));
+        // Unset inputs match nothing
+        assertEquals(0, rules.evaluate(RuleSet.newInputs()));
+    }
+
+    @Test
+    public void rejectsBrokenRules() throws IOException {
+        String[] broken = {
+            "[]",
+            "{\"t\": {}}",
+            "{\"t\": [{\"op\": \"<\", \"value\": 6}]}",
+            "{\"t\": [{\"input\": \"PH\", \"op\": \"!=\", \"value\": 6}]}",
+            "{\"t\": [{\"input\": \"PH\", \"op\": \"<\"}]}",
+            "{\"t\": [{\"input\": \"SOIL_TYPE\", \"op\": \"==\", \"value\": \"GRAVEL\"}]}"
+        };
+        for (String json : broken) {
+            try {
+                compile(json);
+                throw new AssertionError("Compiled " + json);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    /*
+     * Each sample is {pH, N, P, K, OM, moisture, soil type ordinal, health}.
+     * Every edge of every input is tried with the other inputs held mid-range,
+     * then NaN in each input, then random samples.
+     */
+    private static List<double[]> samples() {
+        double[] base = {6.5, 60, 45, 200, 4, 28, SoilData.SoilType.LOAMY.ordinal(), 5.0};
+        double[][] edges = {PH_EDGES, NITROGEN_EDGES, PHOSPHORUS_EDGES, POTASSIUM_EDGES, ORGANIC_MATTER_EDGES,
+            MOISTURE_EDGES, {}, HEALTH_EDGES};
+        List<double[]> samples = new ArrayList<>();
+        for (int input = 0; input < edges.length; input++) {
+            for (double edge : edges[input]) {
+                for (double v : new double[] {Math.nextDown(edge), edge, Math.nextUp(edge)}) {
+                    double[] s = base.clone();
+                    s[input] = v;
+                    samples.add(s);
+                }
+            }
+            if (input != RuleSet.Input.SOIL_TYPE.ordinal()) {
+                double[] s = base.clone();
+                s[input] = Double.NaN;
+                samples.add(s);
+            }
+        }
+        for (SoilData.SoilType type : SoilData.SoilType.values()) {
+            double[] s = base.clone();
+            s[RuleSet.Input.SOIL_TYPE.ordinal()] = type.ordinal();
+            samples.add(s);
+        }
+        Random random = new Random(15);
+        for (int i = 0; i < 20_000; i++) {
+            samples.add(new double[] {
+                3 + random.nextDouble() * 7, random.nextDouble() * 100, random.nextDouble() * 60,
+                random.nextDouble() * 250, random.nextDouble() * 8, random.nextDouble() * 50,
+                random.nextInt(SoilData.SoilType.values().length), random.nextDouble() * 10
+            });
+        }
+        return samples;
+    }
+
+    private static double[] inputs(double[] s) {
+        double[] inputs = RuleSet.newInputs();
+        System.arraycopy(s, 0, inputs, 0, s.length);
+        return inputs;
+    }
+
+    private static List<String> texts(RuleSet rules, long fired) {
+        List<String> texts = new ArrayList<>();
+        for (; fired != 0; fired &= fired - 1) {
+            texts.add(rules.getAction(Long.numberOfTrailingZeros(fired)).getText());
+        }
+        return texts;
+    }
+
+    private static Map<String, RuleSet> compile(String json) throws IOException {
+        return RuleEngine.compile(new ObjectMapper().readTree(json));
+    }
+
+    // SoilAnalyzerService.generateRecommendations before RuleEngine, as "name / priority"
+    private static List<String> oldAnalyzerRecommendations(double[] s) {
+        List<String> r = new ArrayList<>();
+        if (s[0] < 5.5) {
+            r.add("Agricultural Lime / HIGH");
+        } else if (s[0] > 7.5) {
+            r.add("Sulfur / HIGH");
+        }
+        if (s[1] < 40.0) {
+            r.add("Nitrogen-rich Fertilizer / HIGH");
+        }
+        if (s[2] < 30.0) {
+            r.add("Phosphate Fertilizer / MEDIUM");
+        }
+        if (s[3] < 40.0) {
+            r.add("Potassium-rich Fertilizer / MEDIUM");
+        }
+        if (s[4] < 3.0) {
+            r.add("Compost / HIGH");
+        }
+        switch (SoilData.SoilType.values()[(int) s[6]]) {
+            case CLAY:
+                r.add("Gypsum / MEDIUM");
+                break;
+            case SANDY:
+                r.add("Organic Mulch / MEDIUM");
+                break;
+            default:
+                break;
+        }
+        if (s[7] > 7.0) {
+            r.add("Balanced Fertilizer (10-10-10) / LOW");
+        }
+        return r;
+    }
+
+    // util.DataManager.generateRecommendations before RuleEngine
+    private static List<String> oldDataManagerRecommendations(double[] s) {
+        List<String> r = new ArrayList<>();
+        if (s[0] < 6.0) {
+            r.add("Consider adding lime to raise soil pH");
+        } else if (s[0] > 7.5) {
+            r.add("Consider adding sulfur to lower soil pH");
+        }
+        if (s[1] < 40) {
+            r.add("Apply nitrogen-rich fertilizer");
+        }
+        if (s[2] < 30) {
+            r.add("Add phosphate fertilizer");
+        }
+        if (s[3] < 150) {
+            r.add("Apply potash fertilizer");
+        }
+        if (s[4] < 3.0) {
+            r.add("Add organic compost to improve soil structure");
+        }
+        if (s[5] < 20) {
+            r.add("Increase irrigation frequency");
+        } else if (s[5] > 35) {
+            r.add("Improve drainage to prevent waterlogging");
+        }
+        return r;
+    }
+
+    // controller.NewAnalysisController.generateRecommendations before RuleEngine
+    private static List<String> oldEntryFormRecommendations(double[] s) {
+        List<String> r = new ArrayList<>();
+        if (s[0] < 6.0) {
+            r.add("Soil is acidic. Consider applying lime to raise pH.");
+        } else if (s[0] > 7.5) {
+            r.add("Soil is alkaline. Consider applying sulfur to lower pH.");
+        }
+        if (s[1] < 40) {
+            r.add("Low nitrogen levels. Apply nitrogen-rich fertilizer.");
+        }
+        if (s[2] < 20) {
+            r.add("Low phosphorus levels. Apply phosphate fertilizer.");
+        }
+        if (s[3] < 150) {
+            r.add("Low potassium levels. Apply potash fertilizer.");
+        }
+        if (s[4] < 3.0) {
+            r.add("Low organic matter. Add compost or organic amendments.");
+        }
+        return r;
+    }
+}
@@ -0,0 +1,234 @@
+package com.soilanalysis.scoring;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// The profiles against the hand-written scores they replaced, kept below as they were
+public class ScoreProfileTest {
+    private static final double[] PH_EDGES = {5.0, 5.5, 6.0, 7.0, 7.5, 8.0};
+    // {min, max} per SOIL_HEALTH nutrient, in profile order after pH
+    private static final double[][] NUTRIENTS = {
+        {30, 50}, {20, 40}, {40, 60}, {2, 4}, {4, 6}, {2, 4}, {0.8, 1.2}, {3, 5}
+    };
+    private static final ScoreProfile.Input[] NUTRIENT_INPUTS = {
+        ScoreProfile.Input.NITROGEN, ScoreProfile.Input.PHOSPHORUS, ScoreProfile.Input.POTASSIUM,
+        ScoreProfile.Input.ORGANIC_MATTER, ScoreProfile.Input.IRON, ScoreProfile.Input.ZINC,
+        ScoreProfile.Input.COPPER, ScoreProfile.Input.MANGANESE
+    };
+    private static final double[] AWKWARD = {
+        Double.NaN, 0.0, -0.0, -1.0, 1e9, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    public void soilHealthMatchesTheOldScoreBitForBit() {
+        List<double[]> samples = soilHealthSamples();
+        double[][] columns = columns(samples);
+        double[] bulk = new double[samples.size()];
+        ScoringKernel.scalarScoreAll(ScoreProfile.SOIL_HEALTH, columns, samples.size(), bulk);
+        for (int i = 0; i < samples.size(); i++) {
+            double[] s = samples.get(i);
+            double expected = oldHealthScore(s);
+            assertSameBits(describe(s), expected, ScoringKernel.score(ScoreProfile.SOIL_HEALTH, s));
+            assertSameBits(describe(s), expected, bulk[i]);
+        }
+    }
+
+    @Test
+    public void dashboardTrendMatchesTheOldScore() {
+        List<double[]> samples = dashboardSamples();
+        double[][] columns = columns(samples);
+        double[] bulk = new double[samples.size()];
+        ScoringKernel.scalarScoreAll(ScoreProfile.DASHBOARD_TREND, columns, samples.size(), bulk);
+        for (int i = 0; i < samples.size(); i++) {
+            double[] s = samples.get(i);
+            double expected = oldDashboardScore(s);
+            double actual = ScoringKernel.score(ScoreProfile.DASHBOARD_TREND, s);
+            // The terms are summed in a different order than before, so only the last few bits may differ
+            if (Double.isNaN(expected) || Double.isInfinite(expected)) {
+                assertSameBits(describe(s), expected, actual);
+            } else {
+                assertEquals(describe(s), expected, actual, Math.max(1e-12, Math.abs(expected) * 1e-14));
+            }
+            assertSameBits(describe(s), actual, bulk[i]);
+        }
+    }
+
+    @Test
+    public void pHBandTiers() {
+        double[][] expected = {
+            {4.99, 4}, {5.0, 6}, {5.49, 6}, {5.5, 8}, {5.99, 8}, {6.0, 10}, {7.0, 10},
+            {7.01, 8}, {7.5, 8}, {7.51, 6}, {8.0, 6}, {8.01, 4}, {Double.NaN, 4}
+        };
+        for (double[] e : expected) {
+            assertEquals("pH " + e[0], e[1], ScoringKernel.band(e[0], ScoreProfile.SOIL_HEALTH.params[0]), 0.0);
+        }
+    }
+
+    @Test
+    public void rejectsBandsThatAreNotNested() {
+        try {
+            ScoreProfile.builder().band(ScoreProfile.Input.PH, 1.0, 0.0, 6.0, 7.0, 10.0, 6.5, 7.5, 8.0);
+            throw new AssertionError("Overlapping tiers were accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("nested"));
+        }
+    }
+
+    // Every band edge, one ulp either side of it, and the awkward values, in each input in turn
+    private static List<double[]> soilHealthSamples() {
+        List<double[]> samples = new ArrayList<>();
+        double[] base = optimalSample();
+        for (double edge : PH_EDGES) {
+            addAround(samples, base, ScoreProfile.Input.PH, edge);
+        }
+        for (double v : AWKWARD) {
+            samples.add(with(base, ScoreProfile.Input.PH, v));
+        }
+        for (int n = 0; n < NUTRIENTS.length; n++) {
+            double min = NUTRIENTS[n][0];
+            double max = NUTRIENTS[n][1];
+            for (double edge : new double[] {min * 0.6, min * 0.8, min, max, max * 1.2, max * 1.4}) {
+                addAround(samples, base, NUTRIENT_INPUTS[n], edge);
+            }
+            for (double v : AWKWARD) {
+                samples.add(with(base, NUTRIENT_INPUTS[n], v));
+            }
+        }
+        addRandom(samples, 5000, 60.0);
+        return samples;
+    }
+
+    private static List<double[]> dashboardSamples() {
+        List<double[]> samples = new ArrayList<>();
+        double[] base = optimalSample();
+        for (double edge : PH_EDGES) {
+            addAround(samples, base, ScoreProfile.Input.PH, edge);
+        }
+        // Ratio caps, and the awkward values, in every input the profile reads
+        ScoreProfile.Input[] inputs = {ScoreProfile.Input.NITROGEN, ScoreProfile.Input.PHOSPHORUS,
+            ScoreProfile.Input.POTASSIUM, ScoreProfile.Input.ORGANIC_MATTER, ScoreProfile.Input.MOISTURE};
+        double[] caps = {200.0, 100.0, 300.0, 10.0, 100.0};
+        for (int i = 0; i < inputs.length; i++) {
+            addAround(samples, base, inputs[i], caps[i]);
+        }
+        for (ScoreProfile.Input input : ScoreProfile.Input.values()) {
+            for (double v : AWKWARD) {
+                samples.add(with(base, input, v));
+            }
+        }
+        addRandom(samples, 5000, 400.0);
+        return samples;
+    }
+
+    private static double[] optimalSample() {
+        double[] s = new double[ScoreProfile.INPUT_COUNT];
+        s[ScoreProfile.Input.PH.ordinal()] = 6.5;
+        s[ScoreProfile.Input.MOISTURE.ordinal()] = 25.0;
+        for (int n = 0; n < NUTRIENTS.length; n++) {
+            s[NUTRIENT_INPUTS[n].ordinal()] = (NUTRIENTS[n][0] + NUTRIENTS[n][1]) / 2;
+        }
+        return s;
+    }
+
+    private static void addAround(List<double[]> samples, double[] base, ScoreProfile.Input input, double edge) {
+        samples.add(with(base, input, Math.nextDown(edge)));
+        samples.add(with(base, input, edge));
+        samples.add(with(base, input, Math.nextUp(edge)));
+    }
+
+    private static void addRandom(List<double[]> samples, int count, double upTo) {
+        Random random = new Random(16);
+        for (int i = 0; i < count; i++) {
+            double[] s = new double[ScoreProfile.INPUT_COUNT];
+            for (int j = 0; j < s.length; j++) {
+                s[j] = j == ScoreProfile.Input.PH.ordinal() ? random.nextDouble() * 14 : random.nextDouble() * upTo;
+            }
+            samples.add(s);
+        }
+    }
+
+    private static double[] with(double[] base, ScoreProfile.Input input, double value) {
+        double[] s = base.clone();
+        s[input.ordinal()] = value;
+        return s;
+    }
+
+    private static double[][] columns(List<double[]> samples) {
+        double[][] columns = new double[ScoreProfile.INPUT_COUNT][samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            for (int j = 0; j < ScoreProfile.INPUT_COUNT; j++) {
+                columns[j][i] = samples.get(i)[j];
+            }
+        }
+        return columns;
+    }
+
+    private static void assertSameBits(String message, double expected, double actual) {
+        assertEquals(message, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    private static String describe(double[] s) {
+        return Arrays.toString(s);
+    }
+
+    private static double get(double[] s, ScoreProfile.Input input) {
+        return s[input.ordinal()];
+    }
+
+    // com.soilanalysis.model.SoilAnalysis.calculateHealthScore before ScoreProfile; also the baseline in ScoringKernelBenchmark
+    static double oldHealthScore(double[] s) {
+        double phScore = oldPhScore(get(s, ScoreProfile.Input.PH));
+        double nitrogenScore = oldNutrientScore(get(s, ScoreProfile.Input.NITROGEN), 30, 50);
+        double phosphorusScore = oldNutrientScore(get(s, ScoreProfile.Input.PHOSPHORUS), 20, 40);
+        double potassiumScore = oldNutrientScore(get(s, ScoreProfile.Input.POTASSIUM), 40, 60);
+        double organicMatterScore = oldNutrientScore(get(s, ScoreProfile.Input.ORGANIC_MATTER), 2, 4);
+        double ironScore = oldNutrientScore(get(s, ScoreProfile.Input.IRON), 4, 6);
+        double zincScore = oldNutrientScore(get(s, ScoreProfile.Input.ZINC), 2, 4);
+        double copperScore = oldNutrientScore(get(s, ScoreProfile.Input.COPPER), 0.8, 1.2);
+        double manganeseScore = oldNutrientScore(get(s, ScoreProfile.Input.MANGANESE), 3, 5);
+        return (phScore + nitrogenScore + phosphorusScore + potassiumScore + organicMatterScore +
+            ironScore + zincScore + copperScore + manganeseScore) / 9.0;
+    }
+
+    private static double oldPhScore(double ph) {
+        if (ph >= 6.0 && ph <= 7.0) return 10.0;
+        if ((ph >= 5.5 && ph < 6.0) || (ph > 7.0 && ph <= 7.5)) return 8.0;
+        if ((ph >= 5.0 && ph < 5.5) || (ph > 7.5 && ph <= 8.0)) return 6.0;
+        return 4.0;
+    }
+
+    private static double oldNutrientScore(double value, double min, double max) {
+        if (value >= min && value <= max) return 10.0;
+        if ((value >= min * 0.8 && value < min) || (value > max && value <= max * 1.2)) return 8.0;
+        if ((value >= min * 0.6 && value < min * 0.8) || (value > max * 1.2 && value <= max * 1.4)) return 6.0;
+        return 4.0;
+    }
+
+    // controller.DashboardHomeController's per-sample trend score before ScoreProfile
+    static double oldDashboardScore(double[] s) {
+        double ph = get(s, ScoreProfile.Input.PH);
+        double phScore;
+        if (ph >= 6.0 && ph <= 7.0) {
+            phScore = 1.0;
+        } else if (ph >= 5.5 && ph <= 7.5) {
+            phScore = 0.8;
+        } else if (ph >= 5.0 && ph <= 8.0) {
+            phScore = 0.6;
+        } else {
+            phScore = 0.4;
+        }
+        double nutrientScore = (Math.min(get(s, ScoreProfile.Input.NITROGEN) / 200.0, 1.0) +
+            Math.min(get(s, ScoreProfile.Input.PHOSPHORUS) / 100.0, 1.0) +
+            Math.min(get(s, ScoreProfile.Input.POTASSIUM) / 300.0, 1.0)) / 3.0;
+        double organicMatterScore = get(s, ScoreProfile.Input.ORGANIC_MATTER) / 10.0;
+        double moistureScore = get(s, ScoreProfile.Input.MOISTURE) / 100.0;
+        return (phScore * 0.3 + nutrientScore * 0.4 + organicMatterScore * 0.2 + moistureScore * 0.1) * 100;
+    }
+}
@@ -0,0 +1,111 @@
+package com.soilanalysis.scoring;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Surefire runs with --add-modules jdk.incubator.vector, so the SIMD scorer is there to compare
+public class VectorScorerTest {
+    private static final ScoreProfile[] PROFILES = {ScoreProfile.SOIL_HEALTH, ScoreProfile.DASHBOARD_TREND};
+    private static final double[] AWKWARD = {
+        Double.NaN, 0.0, -0.0, -1.0, 1e9, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    public void kernelUsesTheVectorScorer() {
+        assertTrue(ScoringKernel.isVectorized());
+    }
+
+    // Every length up to a few lane widths past the kernel's cutoff, so each tail length is covered
+    @Test
+    public void matchesScalarBitForBitAtEveryLength() {
+        VectorScorer vector = new VectorScorer();
+        Random random = new Random(17);
+        for (ScoreProfile profile : PROFILES) {
+            for (int count = 0; count <= 140; count++) {
+                assertSameScores(profile, vector, columns(profile, count, random), count);
+            }
+            assertSameScores(profile, vector, columns(profile, 1021, random), 1021);
+        }
+    }
+
+    @Test
+    public void scoresOnlyTheRequestedRows() {
+        ScoreProfile profile = ScoreProfile.SOIL_HEALTH;
+        double[][] columns = columns(profile, 200, new Random(3));
+        double[] out = new double[200];
+        Arrays.fill(out, 42.0);
+        new VectorScorer().scoreAll(profile, columns, 131, out);
+        for (int i = 131; i < out.length; i++) {
+            assertEquals(42.0, out[i], 0.0);
+        }
+    }
+
+    @Test
+    public void bulkScoresMatchPerSampleScores() {
+        Random random = new Random(5);
+        for (ScoreProfile profile : PROFILES) {
+            int count = 257;
+            double[][] columns = columns(profile, count, random);
+            double[] out = new double[count];
+            ScoringKernel.scoreAll(profile, columns, count, out);
+            double[] sample = new double[ScoreProfile.INPUT_COUNT];
+            for (int i = 0; i < count; i++) {
+                for (int j = 0; j < sample.length; j++) {
+                    sample[j] = columns[j] != null ? columns[j][i] : 0.0;
+                }
+                assertEquals("row " + i, Double.doubleToRawLongBits(ScoringKernel.score(profile, sample)),
+                    Double.doubleToRawLongBits(out[i]));
+            }
+        }
+    }
+
+    private static void assertSameScores(ScoreProfile profile, VectorScorer vector, double[][] columns, int count) {
+        double[] expected = new double[count];
+        double[] actual = new double[count];
+        ScoringKernel.scalarScoreAll(profile, columns, count, expected);
+        vector.scoreAll(profile, columns, count, actual);
+        for (int i = 0; i < count; i++) {
+            assertEquals("count " + count + ", row " + i, Double.doubleToRawLongBits(expected[i]),
+                Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+
+    /*
+     * Random values around each column's band edges, with band edges, their
+     * neighbouring doubles and the awkward values scattered in, so that tail
+     * rows get them as well as full lanes. Unused columns are left null.
+     */
+    private static double[][] columns(ScoreProfile profile, int count, Random random) {
+        double[][] columns = new double[ScoreProfile.INPUT_COUNT][];
+        for (int term = 0; term < profile.inputs.length; term++) {
+            double[] p = profile.params[term];
+            double largest = 0.0;
+            for (double x : p) {
+                if (!Double.isInfinite(x)) {
+                    largest = Math.max(largest, x);
+                }
+            }
+            double[] column = new double[count];
+            for (int i = 0; i < count; i++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        column[i] = AWKWARD[random.nextInt(AWKWARD.length)];
+                        break;
+                    case 1:
+                        double edge = p[random.nextInt(p.length)];
+                        column[i] = random.nextBoolean() ? edge : random.nextBoolean() ? Math.nextUp(edge) : Math.nextDown(edge);
+                        break;
+                    default:
+                        column[i] = random.nextDouble() * 2 * largest;
+                }
+            }
+            columns[profile.inputs[term]] = column;
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,277 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilAnalysis.CropSuitability;
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.Season;
+import com.soilanalysis.model.SoilData.SoilType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Catalogue ranking against scoring every crop the way the per-crop formulas did, then sorting
+public class CropCatalogueTest {
+    private static final Season[] SEASONS_AND_NONE = {null, Season.SPRING, Season.SUMMER, Season.AUTUMN, Season.WINTER};
+
+    @Test
+    public void rankingMatchesBruteForceScoring() {
+        Random random = new Random(19);
+        for (CropCatalogue catalogue : new CropCatalogue[] {CropCatalogue.getDefault(), syntheticCatalogue(500, random)}) {
+            assertRankedByBruteForce(catalogue, samples(catalogue, 400, random));
+        }
+    }
+
+    private static void assertRankedByBruteForce(CropCatalogue catalogue, List<SoilData> samples) {
+        for (SoilData sample : samples) {
+            for (Season season : SEASONS_AND_NONE) {
+                for (boolean preferredSoilOnly : new boolean[] {false, true}) {
+                    CropCatalogue.Ranking ranking = catalogue.rank(sample, season, preferredSoilOnly);
+                    List<long[]> expected = bruteForce(catalogue, sample, season, preferredSoilOnly);
+                    assertEquals(expected.size(), ranking.size());
+                    for (int i = 0; i < ranking.size(); i++) {
+                        assertEquals(expected.get(i)[0], ranking.getCropId(i));
+                        assertEquals(expected.get(i)[1], Double.doubleToRawLongBits(ranking.getScore(i)));
+                    }
+                }
+            }
+        }
+    }
+
+    // top(k) is the first k of the full ranking, ties included, whatever k is
+    @Test
+    public void topIsThePrefixOfTheRanking() {
+        Random random = new Random(20);
+        for (CropCatalogue catalogue : new CropCatalogue[] {CropCatalogue.getDefault(), syntheticCatalogue(500, random)}) {
+            int[] ks = {1, 3, 10, catalogue.size() - 1, catalogue.size(), catalogue.size() + 100};
+            for (SoilData sample : samples(catalogue, 200, random)) {
+                for (Season season : SEASONS_AND_NONE) {
+                    for (boolean preferredSoilOnly : new boolean[] {false, true}) {
+                        CropCatalogue.Ranking ranking = catalogue.rank(sample, season, preferredSoilOnly);
+                        for (int k : ks) {
+                            CropCatalogue.Ranking top = catalogue.top(sample, season, preferredSoilOnly, k);
+                            assertEquals(Math.min(k, ranking.size()), top.size());
+                            for (int i = 0; i < top.size(); i++) {
+                                assertEquals(ranking.getCropId(i), top.getCropId(i));
+                                assertEquals(Double.doubleToRawLongBits(ranking.getScore(i)),
+                                    Double.doubleToRawLongBits(top.getScore(i)));
+                            }
+                        }
+                        assertEquals(0, catalogue.top(sample, season, preferredSoilOnly, 0).size());
+                        assertEquals(0, catalogue.top(sample, season, preferredSoilOnly, -1).size());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void analyzerTopCropsFollowTheRanking() {
+        SoilAnalyzerService analyzer = new SoilAnalyzerService(ForkJoinPool.commonPool());
+        Random random = new Random(21);
+        for (SoilData sample : samples(CropCatalogue.getDefault(), 100, random)) {
+            sample.setSeason(random.nextBoolean() ? null : Season.values()[random.nextInt(Season.values().length)].name());
+            CropCatalogue.Ranking ranking = analyzer.rankCrops(sample, false);
+            for (int k : new int[] {0, 1, 5, ranking.size() + 1}) {
+                List<CropSuitability> top = analyzer.topCrops(sample, k);
+                assertEquals(Math.min(k, ranking.size()), top.size());
+                for (int i = 0; i < top.size(); i++) {
+                    assertEquals(ranking.getCrop(i).getName(), top.get(i).getCropName());
+                    assertEquals(ranking.getScore(i), top.get(i).getSuitabilityScore(), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void resolvesCropListsCaseInsensitively() {
+        CropCatalogue catalogue = CropCatalogue.getDefault();
+        int corn = catalogue.cropId("Corn");
+        int oats = catalogue.cropId("oats");
+        assertTrue(corn >= 0 && oats >= 0);
+        assertEquals(corn, catalogue.cropId(" CORN "));
+        assertEquals(-1, catalogue.cropId("Kudzu"));
+        assertArrayEquals(new int[] {oats, corn}, catalogue.resolve("Oats, kudzu,corn,OATS"));
+
+        // Nothing known falls back to the original five crops
+        int[] defaults = catalogue.resolve(null);
+        assertEquals(5, defaults.length);
+        assertArrayEquals(defaults, catalogue.resolve("Kudzu"));
+        assertArrayEquals(defaults, catalogue.resolve(" "));
+        for (int id : defaults) {
+            assertTrue(catalogue.getCrop(id).isDefault());
+        }
+    }
+
+    @Test
+    public void analyzerScoresEveryRequestedCrop() {
+        SoilAnalyzerService analyzer = new SoilAnalyzerService(ForkJoinPool.commonPool());
+        SoilData sample = new SoilData();
+        sample.setPh(6.2);
+        sample.setNitrogen(38);
+        sample.setPhosphorus(28);
+        sample.setPotassium(42);
+        sample.setSoilType(SoilType.SANDY);
+        sample.setCropType("Wheat,Corn,Soybeans,Cotton,Rice,Barley,Oats,Canola");
+
+        CropCatalogue catalogue = CropCatalogue.getDefault();
+        int[] key = catalogue.getMatrix().quantize(sample, new int[catalogue.getMatrix().keyLength()]);
+        List<String> names = new ArrayList<>();
+        for (CropSuitability suitability : analyzer.analyzeSoil(sample).getCropSuitability()) {
+            names.add(suitability.getCropName());
+            assertEquals(catalogue.getMatrix().score(catalogue.cropId(suitability.getCropName()), key),
+                suitability.getSuitabilityScore(), 0.0);
+        }
+        assertEquals(List.of("Wheat", "Corn", "Soybeans", "Cotton", "Rice", "Barley", "Oats", "Canola"), names);
+    }
+
+    @Test
+    public void loadsRangesWithDefaults() throws IOException {
+        CropCatalogue catalogue = load("{\"defaults\": {\"nitrogen\": [40, 80], \"phosphorus\": [30, 60], "
+            + "\"potassium\": [40, 80]}, \"crops\": ["
+            + "{\"name\": \"Teff\", \"ph\": [6, 7, 5, 8], \"soils\": [\"CLAY\"], \"seasons\": [\"SUMMER\"], "
+            + "\"potassium\": [20, 50]}]}");
+        CropCatalogue.Crop teff = catalogue.getCrop(0);
+        assertEquals(40.0, teff.getNitrogenMin(), 0.0);
+        assertEquals(60.0, teff.getPhosphorusMax(), 0.0);
+        assertEquals(20.0, teff.getPotassiumMin(), 0.0);
+        assertEquals(Set.of(SoilType.CLAY), teff.getPreferredSoils());
+        assertEquals(Set.of(Season.SUMMER), teff.getSeasons());
+
+        String[] broken = {
+            "{\"crops\": {}}",
+            "{\"crops\": [{\"name\": \"Teff\", \"ph\": [6, 7]}]}",
+            "{\"crops\": [{\"name\": \"Teff\", \"ph\": [6, 7, 5, 8]}]}"
+        };
+        for (String json : broken) {
+            try {
+                load(json);
+                throw new AssertionError("Loaded " + json);
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+        try {
+            load("{\"crops\": [{\"name\": \"Teff\", \"ph\": [6, 7, 5, 8], \"nitrogen\": [1, 2], "
+                + "\"phosphorus\": [1, 2], \"potassium\": [1, 2]}, {\"name\": \"TEFF\", \"ph\": [6, 7, 5, 8], "
+                + "\"nitrogen\": [1, 2], \"phosphorus\": [1, 2], \"potassium\": [1, 2]}]}");
+            throw new AssertionError("Loaded a repeated crop");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    // Crop ids and score bits, best first, then by id, scored the way the per-crop formulas did
+    static List<long[]> bruteForce(CropCatalogue catalogue, SoilData sample, Season season, boolean preferredSoilOnly) {
+        List<long[]> scored = new ArrayList<>();
+        for (int id = 0; id < catalogue.size(); id++) {
+            CropCatalogue.Crop crop = catalogue.getCrop(id);
+            if (season != null && !crop.getSeasons().contains(season)) {
+                continue;
+            }
+            boolean preferred = sample.getSoilType() != null && crop.getPreferredSoils().contains(sample.getSoilType());
+            if (preferredSoilOnly && !preferred) {
+                continue;
+            }
+            double ph = sample.getPh();
+            double score = 0.0;
+            score += (ph >= crop.getPhMin() && ph <= crop.getPhMax()) ? 10.0
+                : (ph >= crop.getPhLow() && ph <= crop.getPhHigh()) ? 7.0 : 4.0;
+            double nutrients = 0.0;
+            nutrients += nutrientScore(sample.getNitrogen(), crop.getNitrogenMin(), crop.getNitrogenMax());
+            nutrients += nutrientScore(sample.getPhosphorus(), crop.getPhosphorusMin(), crop.getPhosphorusMax());
+            nutrients += nutrientScore(sample.getPotassium(), crop.getPotassiumMin(), crop.getPotassiumMax());
+            score += nutrients / 3;
+            score += preferred ? 10.0 : 7.0;
+            scored.add(new long[] {id, Double.doubleToRawLongBits(score / 3)});
+        }
+        scored.sort((a, b) -> {
+            int byScore = Double.compare(Double.longBitsToDouble(b[1]), Double.longBitsToDouble(a[1]));
+            return byScore != 0 ? byScore : Long.compare(a[0], b[0]);
+        });
+        return scored;
+    }
+
+    private static double nutrientScore(double value, double min, double max) {
+        if (value >= min && value <= max) {
+            return 10.0;
+        } else if (value >= min * 0.7 && value <= max * 1.3) {
+            return 7.0;
+        } else if (value >= min * 0.5 && value <= max * 1.5) {
+            return 4.0;
+        } else {
+            return 1.0;
+        }
+    }
+
+    /*
+     * Crops with random nested pH ranges on a 0.1 grid, a handful of shared
+     * nutrient profiles, and random soils and seasons, so many crops tie.
+     */
+    static CropCatalogue syntheticCatalogue(int size, Random random) {
+        double[][] profiles = {{40, 80, 30, 60, 40, 80}, {30, 70, 30, 60, 40, 80}, {50, 100, 20, 40, 60, 120},
+            {20, 40, 10, 30, 30, 50}};
+        List<CropCatalogue.Crop> crops = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            double phMin = 50 + random.nextInt(15);
+            double phMax = phMin + 5 + random.nextInt(15);
+            double phLow = phMin - random.nextInt(8);
+            double phHigh = phMax + random.nextInt(8);
+            double[] n = profiles[random.nextInt(profiles.length)];
+            Set<SoilType> soils = EnumSet.noneOf(SoilType.class);
+            for (SoilType type : SoilType.values()) {
+                if (random.nextInt(3) == 0) {
+                    soils.add(type);
+                }
+            }
+            Set<Season> seasons = EnumSet.noneOf(Season.class);
+            for (Season season : Season.values()) {
+                if (random.nextBoolean()) {
+                    seasons.add(season);
+                }
+            }
+            crops.add(new CropCatalogue.Crop("Crop " + i, i < 5, phMin / 10, phMax / 10, phLow / 10, phHigh / 10,
+                n[0], n[1], n[2], n[3], n[4], n[5], soils, seasons));
+        }
+        return new CropCatalogue(crops);
+    }
+
+    // Random samples, plus samples sitting on pH edges of the catalogue and with NaN or no soil type
+    static List<SoilData> samples(CropCatalogue catalogue, int count, Random random) {
+        List<SoilData> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SoilData s = new SoilData();
+            CropCatalogue.Crop crop = catalogue.getCrop(random.nextInt(catalogue.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    s.setPh(crop.getPhMin());
+                    break;
+                case 1:
+                    s.setPh(Math.nextUp(crop.getPhHigh()));
+                    break;
+                default:
+                    s.setPh(4.0 + random.nextDouble() * 5.0);
+            }
+            s.setNitrogen(i % 50 == 0 ? Double.NaN : random.nextDouble() * 150);
+            s.setPhosphorus(random.nextDouble() * 100);
+            s.setPotassium(random.nextDouble() * 150);
+            s.setSoilType(i % 20 == 0 ? null : SoilType.values()[random.nextInt(SoilType.values().length)]);
+            samples.add(s);
+        }
+        return samples;
+    }
+
+    private static CropCatalogue load(String json) throws IOException {
+        return CropCatalogue.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,227 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilAnalysis.CropSuitability;
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.SoilType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+// The matrix against the per-crop formulas it replaced, kept below as they were
+public class CropSuitabilityMatrixTest {
+    private static final String[] OLD_CROPS = {"Corn", "Wheat", "Soybeans", "Cotton", "Rice"};
+    private static final double[] PH_EDGES = {5.5, 5.8, 6.0, 7.0, 7.5, 8.0};
+    // {min, max} for nitrogen, phosphorus and potassium
+    private static final double[][] NUTRIENTS = {{40, 80}, {30, 60}, {40, 80}};
+
+    @Test
+    public void scoresMatchTheOldFormulasBitForBit() {
+        CropCatalogue catalogue = CropCatalogue.getDefault();
+        CropSuitabilityMatrix matrix = catalogue.getMatrix();
+        int[] key = new int[matrix.keyLength()];
+        for (SoilData sample : samples(true)) {
+            matrix.quantize(sample, key);
+            for (String crop : OLD_CROPS) {
+                assertEquals(describe(sample) + " " + crop,
+                    Double.doubleToRawLongBits(oldScore(sample, crop)),
+                    Double.doubleToRawLongBits(matrix.score(catalogue.cropId(crop), key)));
+            }
+        }
+    }
+
+    @Test
+    public void analyzerReportsTheOldSuitability() {
+        SoilAnalyzerService analyzer = new SoilAnalyzerService(ForkJoinPool.commonPool());
+        for (SoilData sample : samples(false)) {
+            List<String> expected = new ArrayList<>();
+            for (String crop : OLD_CROPS) {
+                expected.add(oldSuitability(sample, crop));
+            }
+            List<String> actual = new ArrayList<>();
+            for (CropSuitability suitability : analyzer.analyzeSoil(sample).getCropSuitability()) {
+                actual.add(describe(suitability));
+            }
+            assertEquals(describe(sample), expected, actual);
+        }
+    }
+
+    /*
+     * Every pH edge and every nutrient tier edge, one ulp either side, and
+     * NaN, with the other values in range; then every soil type, and random
+     * samples. The analyzer never had to handle a missing soil type.
+     */
+    private static List<SoilData> samples(boolean withoutSoilType) {
+        List<SoilData> samples = new ArrayList<>();
+        for (double edge : PH_EDGES) {
+            for (double v : around(edge)) {
+                SoilData s = base();
+                s.setPh(v);
+                samples.add(s);
+            }
+        }
+        for (int n = 0; n < NUTRIENTS.length; n++) {
+            double min = NUTRIENTS[n][0];
+            double max = NUTRIENTS[n][1];
+            for (double edge : new double[] {min * 0.5, min * 0.7, min, max, max * 1.3, max * 1.5}) {
+                for (double v : around(edge)) {
+                    samples.add(withNutrient(n, v));
+                }
+            }
+            samples.add(withNutrient(n, Double.NaN));
+        }
+        SoilData nanPh = base();
+        nanPh.setPh(Double.NaN);
+        samples.add(nanPh);
+        for (SoilType type : SoilType.values()) {
+            SoilData s = base();
+            s.setSoilType(type);
+            samples.add(s);
+        }
+        if (withoutSoilType) {
+            SoilData s = base();
+            s.setSoilType(null);
+            samples.add(s);
+        }
+        Random random = new Random(18);
+        for (int i = 0; i < 5000; i++) {
+            SoilData s = new SoilData();
+            s.setPh(4.0 + random.nextDouble() * 5.0);
+            s.setNitrogen(random.nextDouble() * 150);
+            s.setPhosphorus(random.nextDouble() * 100);
+            s.setPotassium(random.nextDouble() * 150);
+            s.setSoilType(SoilType.values()[random.nextInt(SoilType.values().length)]);
+            samples.add(s);
+        }
+        return samples;
+    }
+
+    private static double[] around(double edge) {
+        return new double[] {Math.nextDown(edge), edge, Math.nextUp(edge)};
+    }
+
+    private static SoilData base() {
+        SoilData s = new SoilData();
+        s.setPh(6.5);
+        s.setNitrogen(60);
+        s.setPhosphorus(45);
+        s.setPotassium(60);
+        s.setSoilType(SoilType.LOAMY);
+        return s;
+    }
+
+    private static SoilData withNutrient(int nutrient, double value) {
+        SoilData s = base();
+        if (nutrient == 0) {
+            s.setNitrogen(value);
+        } else if (nutrient == 1) {
+            s.setPhosphorus(value);
+        } else {
+            s.setPotassium(value);
+        }
+        return s;
+    }
+
+    private static String describe(SoilData s) {
+        return "pH " + s.getPh() + ", N " + s.getNitrogen() + ", P " + s.getPhosphorus() + ", K " + s.getPotassium()
+            + ", " + s.getSoilType();
+    }
+
+    private static String describe(CropSuitability s) {
+        return s.getCropName() + " " + Double.doubleToRawLongBits(s.getSuitabilityScore()) + " " + s.getAdvantages()
+            + " " + s.getChallenges() + " " + s.getRecommendedVariety() + " " + s.getPlantingSeason();
+    }
+
+    // SoilAnalyzerService.analyzeCropSuitability and its helpers before the matrix
+
+    private static String oldSuitability(SoilData soilData, String crop) {
+        CropSuitability suitability = new CropSuitability();
+        suitability.setCropName(crop);
+        suitability.setSuitabilityScore(oldScore(soilData, crop));
+        switch (crop.toLowerCase()) {
+            case "corn":
+                suitability.getAdvantages().add("Good nitrogen levels for corn growth");
+                if (soilData.getPhosphorus() < 30.0) {
+                    suitability.getChallenges().add("Phosphorus levels may limit root development");
+                }
+                suitability.setRecommendedVariety("Select based on local climate");
+                suitability.setPlantingSeason("Spring");
+                break;
+            case "wheat":
+                suitability.getAdvantages().add("Suitable pH range for wheat");
+                if (soilData.getPotassium() < 40.0) {
+                    suitability.getChallenges().add("Potassium levels may affect grain quality");
+                }
+                suitability.setRecommendedVariety("Winter wheat varieties");
+                suitability.setPlantingSeason("Fall");
+                break;
+            default:
+                break;
+        }
+        return describe(suitability);
+    }
+
+    private static double oldScore(SoilData soilData, String crop) {
+        double score = 0.0;
+        int factors = 0;
+        score += oldPhScore(soilData.getPh(), crop);
+        factors++;
+        score += oldNutrientSuitability(soilData);
+        factors++;
+        score += oldSoilTypeScore(soilData.getSoilType(), crop);
+        factors++;
+        return factors > 0 ? score / factors : 0.0;
+    }
+
+    private static double oldPhScore(double ph, String crop) {
+        switch (crop.toLowerCase()) {
+            case "corn":
+                return (ph >= 5.8 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
+            case "wheat":
+                return (ph >= 6.0 && ph <= 7.5) ? 10.0 : (ph >= 5.5 && ph <= 8.0) ? 7.0 : 4.0;
+            case "soybeans":
+                return (ph >= 6.0 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
+            default:
+                return (ph >= 6.0 && ph <= 7.0) ? 10.0 : (ph >= 5.5 && ph <= 7.5) ? 7.0 : 4.0;
+        }
+    }
+
+    private static double oldNutrientSuitability(SoilData soilData) {
+        double score = 0.0;
+        int factors = 0;
+        score += oldNutrientScore(soilData.getNitrogen(), 40.0, 80.0);
+        score += oldNutrientScore(soilData.getPhosphorus(), 30.0, 60.0);
+        score += oldNutrientScore(soilData.getPotassium(), 40.0, 80.0);
+        factors += 3;
+        return factors > 0 ? score / factors : 0.0;
+    }
+
+    private static double oldNutrientScore(double value, double min, double max) {
+        if (value >= min && value <= max) {
+            return 10.0;
+        } else if (value >= min * 0.7 && value <= max * 1.3) {
+            return 7.0;
+        } else if (value >= min * 0.5 && value <= max * 1.5) {
+            return 4.0;
+        } else {
+            return 1.0;
+        }
+    }
+
+    private static double oldSoilTypeScore(SoilType soilType, String crop) {
+        switch (crop.toLowerCase()) {
+            case "corn":
+                return (soilType == SoilType.LOAMY || soilType == SoilType.CLAY) ? 10.0 : 7.0;
+            case "wheat":
+                return (soilType == SoilType.LOAMY || soilType == SoilType.SILTY) ? 10.0 : 7.0;
+            case "soybeans":
+                return (soilType == SoilType.LOAMY || soilType == SoilType.SILTY) ? 10.0 : 7.0;
+            default:
+                return (soilType == SoilType.LOAMY) ? 10.0 : 7.0;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.CompactSoilAnalysis;
+import com.soilanalysis.model.MultiSeasonAnalysis;
+import com.soilanalysis.model.SoilAnalysis;
+import com.soilanalysis.model.SoilAnalysis.CropSuitability;
+import com.soilanalysis.model.SoilAnalysis.EnvironmentalImpact;
+import com.soilanalysis.model.SoilAnalysis.FertilizerRecommendation;
+import com.soilanalysis.model.SoilData;
+import com.soilanalysis.model.SoilData.Season;
+import com.soilanalysis.model.SoilData.SoilType;
+import com.soilanalysis.rules.RuleEngine;
+import com.soilanalysis.rules.RuleSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+// The analyzer's result paths against each other and against the analysis it built before the compact result
+public class SoilAnalyzerServiceTest {
+    private static final String[] CROP_LISTS = {null, "", "Wheat,Corn,Soybeans,Cotton,Rice,Barley,Oats,Canola",
+        "corn, kudzu", "Kudzu"};
+
+    private final SoilAnalyzerService analyzer = new SoilAnalyzerService(ForkJoinPool.commonPool());
+
+    @Test
+    public void analysisMatchesTheOldAnalyzer() {
+        for (SoilData sample : samples(5000, new Random(22))) {
+            String expected = describe(oldAnalysis(sample));
+            assertEquals(expected, describe(analyzer.analyzeSoil(sample)));
+            assertEquals(expected, describe(analyzer.expand(analyzer.analyzeCompact(sample))));
+        }
+    }
+
+    @Test
+    public void compactBatchMatchesPerSampleResults() {
+        List<SoilData> samples = samples(3000, new Random(23));
+        BatchAnalysisResult<CompactSoilAnalysis> batch = analyzer.analyzeAllCompact(samples);
+        assertEquals(0, batch.getFailureCount());
+        assertEquals(samples.size(), batch.getSampleCount());
+        for (int i = 0; i < samples.size(); i++) {
+            CompactSoilAnalysis expected = analyzer.analyzeCompact(samples.get(i));
+            CompactSoilAnalysis actual = batch.getResults().get(i);
+            assertSame(samples.get(i), actual.getSoilData());
+            assertEquals(expected.getSeason(), actual.getSeason());
+            assertEquals(Double.doubleToRawLongBits(expected.getHealthScore()),
+                Double.doubleToRawLongBits(actual.getHealthScore()));
+            assertEquals(expected.getFiredRules(), actual.getFiredRules());
+            assertEquals(expected.getFlags(), actual.getFlags());
+            assertEquals(describe(analyzer.expand(expected)), describe(analyzer.expand(actual)));
+        }
+    }
+
+    // After 1-3 random fields of a sample change, the updated analysis is the one a fresh analysis gives
+    @Test
+    public void updatedAnalysisMatchesAFreshOne() {
+        Random random = new Random(24);
+        SoilData.Field[] fields = SoilData.Field.values();
+        for (SoilData sample : samples(5000, random)) {
+            SoilAnalysis analysis = analyzer.analyzeSoil(sample);
+            Set<SoilData.Field> changed = EnumSet.noneOf(SoilData.Field.class);
+            for (int n = 1 + random.nextInt(3); changed.size() < n; ) {
+                SoilData.Field field = fields[random.nextInt(fields.length)];
+                change(sample, field, random);
+                changed.add(field);
+            }
+            Object[] before = sections(analysis);
+            assertSame(analysis, analyzer.updateAnalysis(analysis, changed));
+            assertEquals(changed.toString(), describe(analyzer.analyzeSoil(sample)), describe(analysis));
+
+            // Sections the change can't reach are left as they were
+            Object[] after = sections(analysis);
+            Set<AnalysisStage> affected = AnalysisStage.affectedBy(changed);
+            for (AnalysisStage stage : AnalysisStage.values()) {
+                if (!affected.contains(stage) && stage != AnalysisStage.HEALTH_SCORE) {
+                    assertSame(stage + " after " + changed, before[stage.ordinal()], after[stage.ordinal()]);
+                }
+            }
+        }
+    }
+
+    // Each season's result is the old analyzer run with that season set, and the sample itself is left alone
+    @Test
+    public void seasonsMatchTheOldAnalyzerPerSeason() {
+        for (SoilData sample : samples(3000, new Random(25))) {
+            String season = sample.getSeason();
+            MultiSeasonAnalysis seasons = analyzer.analyzeSeasons(sample);
+            assertEquals(List.of(Season.values()), new ArrayList<>(seasons.getSeasons()));
+
+            Map<String, String> merged = new HashMap<>();
+            for (Season s : Season.values()) {
+                SoilData inSeason = sample.withSeason(s.name());
+                SoilAnalysis analysis = analyzer.expand(seasons.getAnalysis(s));
+                assertEquals(describe(oldAnalysis(inSeason)), describe(analysis));
+                assertEquals(sample.getId(), analysis.getSoilData().getId());
+                assertEquals(new ArrayList<>(analysis.getSeasonalRecommendations().entrySet()),
+                    new ArrayList<>(seasons.getSeasonalRecommendations(s).entrySet()));
+                merged.putAll(oldSeasonalRecommendations(inSeason));
+            }
+            // Main used to merge the four runs' maps in season order
+            assertEquals(new ArrayList<>(merged.entrySet()),
+                new ArrayList<>(seasons.getAllSeasonalRecommendations().entrySet()));
+            assertEquals(season, sample.getSeason());
+            if (season != null) {
+                assertSame(sample, analyzer.expand(seasons.getAnalysis(Season.valueOf(season))).getSoilData());
+            }
+        }
+    }
+
+    // Each analysis section by AnalysisStage ordinal; the health score is a double and not an object to compare
+    private static Object[] sections(SoilAnalysis a) {
+        Object[] sections = new Object[AnalysisStage.values().length];
+        sections[AnalysisStage.OVERALL_ASSESSMENT.ordinal()] = a.getOverallAssessment();
+        sections[AnalysisStage.RECOMMENDATIONS.ordinal()] = a.getRecommendations();
+        sections[AnalysisStage.IMPROVEMENT_AREAS.ordinal()] = a.getImprovementAreas();
+        sections[AnalysisStage.NUTRIENT_SCORES.ordinal()] = a.getNutrientScores();
+        sections[AnalysisStage.CROP_SUITABILITY.ordinal()] = a.getCropSuitability();
+        sections[AnalysisStage.ENVIRONMENTAL_IMPACTS.ordinal()] = a.getEnvironmentalImpacts();
+        sections[AnalysisStage.SEASONAL_RECOMMENDATIONS.ordinal()] = a.getSeasonalRecommendations();
+        return sections;
+    }
+
+    private static void change(SoilData s, SoilData.Field field, Random random) {
+        switch (field) {
+            case PH:
+                s.setPh(4.5 + random.nextDouble() * 4.0);
+                break;
+            case NITROGEN:
+                s.setNitrogen(random.nextDouble() * 120);
+                break;
+            case PHOSPHORUS:
+                s.setPhosphorus(random.nextDouble() * 90);
+                break;
+            case POTASSIUM:
+                s.setPotassium(random.nextDouble() * 200);
+                break;
+            case ORGANIC_MATTER:
+                s.setOrganicMatter(random.nextDouble() * 8);
+                break;
+            case MOISTURE:
+                s.setMoisture(random.nextDouble() * 50);
+                break;
+            case TEMPERATURE:
+                s.setTemperature(random.nextDouble() * 35);
+                break;
+            case BULK_DENSITY:
+                s.setBulkDensity(0.9 + random.nextDouble() * 0.9);
+                break;
+            case CATION_EXCHANGE_CAPACITY:
+                s.setCationExchangeCapacity(random.nextDouble() * 40);
+                break;
+            case SOIL_TYPE:
+                s.setSoilType(SoilType.values()[random.nextInt(SoilType.values().length)]);
+                break;
+            case LOCATION:
+                s.setLocation("Field " + random.nextInt(10));
+                break;
+            case SAMPLE_DEPTH:
+                s.setSampleDepth(random.nextInt(30) + " cm");
+                break;
+            case CROP_TYPE:
+                s.setCropType(CROP_LISTS[random.nextInt(CROP_LISTS.length)]);
+                break;
+            case SEASON:
+                int season = random.nextInt(Season.values().length + 1);
+                s.setSeason(season < Season.values().length ? Season.values()[season].name() : null);
+                break;
+            case IRON:
+                s.setIron(random.nextDouble() * 9);
+                break;
+            case ZINC:
+                s.setZinc(random.nextDouble() * 6);
+                break;
+            case COPPER:
+                s.setCopper(random.nextDouble() * 2);
+                break;
+            case MANGANESE:
+                s.setManganese(random.nextDouble() * 8);
+                break;
+            case SAND_PERCENTAGE:
+                s.setSandPercentage(random.nextDouble() * 100);
+                break;
+            case SILT_PERCENTAGE:
+                s.setSiltPercentage(random.nextDouble() * 100);
+                break;
+            case CLAY_PERCENTAGE:
+                s.setClayPercentage(random.nextDouble() * 100);
+                break;
+            default:
+                throw new IllegalStateException("Unknown field " + field);
+        }
+    }
+
+    /*
+     * Random samples with every analyzer threshold nearby, a season (or
+     * none), one of a few crop lists, and the odd NaN.
+     */
+    static List<SoilData> samples(int count, Random random) {
+        List<SoilData> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SoilData s = new SoilData();
+            s.setPh(4.5 + random.nextDouble() * 4.0);
+            s.setNitrogen(random.nextDouble() * 120);
+            s.setPhosphorus(random.nextDouble() * 90);
+            s.setPotassium(random.nextDouble() * 200);
+            s.setOrganicMatter(random.nextDouble() * 8);
+            s.setMoisture(random.nextDouble() * 50);
+            s.setTemperature(random.nextDouble() * 35);
+            s.setBulkDensity(0.9 + random.nextDouble() * 0.9);
+            s.setCationExchangeCapacity(random.nextDouble() * 40);
+            s.setIron(random.nextDouble() * 9);
+            s.setZinc(random.nextDouble() * 6);
+            s.setCopper(random.nextDouble() * 2);
+            s.setManganese(random.nextDouble() * 8);
+            s.setSoilType(SoilType.values()[random.nextInt(SoilType.values().length)]);
+            int season = random.nextInt(Season.values().length + 1);
+            s.setSeason(season < Season.values().length ? Season.values()[season].name() : null);
+            s.setCropType(CROP_LISTS[random.nextInt(CROP_LISTS.length)]);
+            if (i % 97 == 0) {
+                s.setNitrogen(Double.NaN);
+            }
+            samples.add(s);
+        }
+        return samples;
+    }
+
+    // Everything in an analysis but its id, with doubles as bits and maps in iteration order
+    static String describe(SoilAnalysis a) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(a.getSoilData().getId()).append(' ').append(a.getSoilData().getSeason()).append('\n');
+        sb.append(Double.doubleToRawLongBits(a.getHealthScore())).append(' ').append(a.getOverallAssessment()).append('\n');
+        for (FertilizerRecommendation r : a.getRecommendations()) {
+            sb.append(r.getName()).append(" | ").append(r.getAmount()).append(" | ").append(r.getFrequency())
+                .append(" | ").append(r.getBenefits()).append(" | ").append(r.getNotes()).append(" | ")
+                .append(r.getPriority()).append('\n');
+        }
+        sb.append(a.getImprovementAreas()).append('\n');
+        for (Map.Entry<String, Double> e : a.getNutrientScores().entrySet()) {
+            sb.append(e.getKey()).append('=').append(Double.doubleToRawLongBits(e.getValue())).append(' ');
+        }
+        sb.append('\n');
+        for (CropSuitability c : a.getCropSuitability()) {
+            sb.append(c.getCropName()).append(' ').append(Double.doubleToRawLongBits(c.getSuitabilityScore()))
+                .append(' ').append(c.getAdvantages()).append(' ').append(c.getChallenges()).append(' ')
+                .append(c.getRecommendedVariety()).append(' ').append(c.getPlantingSeason()).append('\n');
+        }
+        for (EnvironmentalImpact e : a.getEnvironmentalImpacts()) {
+            sb.append(e.getImpactType()).append(" | ").append(e.getDescription()).append(" | ").append(e.getSeverity())
+                .append(" | ").append(e.getMitigationStrategies()).append(" | ").append(e.getLongTermEffect())
+                .append('\n');
+        }
+        sb.append(a.getSeasonalRecommendations());
+        return sb.toString();
+    }
+
+    // SoilAnalyzerService.analyzeSoil before CompactSoilAnalysis, each stage adding straight to the analysis
+    private static SoilAnalysis oldAnalysis(SoilData soilData) {
+        SoilAnalysis analysis = new SoilAnalysis();
+        analysis.setSoilData(soilData);
+        analysis.calculateHealthScore();
+
+        RuleSet rules = RuleEngine.get(RuleEngine.ANALYZER);
+        double[] inputs = RuleSet.newInputs();
+        inputs[RuleSet.Input.PH.ordinal()] = soilData.getPh();
+        inputs[RuleSet.Input.NITROGEN.ordinal()] = soilData.getNitrogen();
+        inputs[RuleSet.Input.PHOSPHORUS.ordinal()] = soilData.getPhosphorus();
+        inputs[RuleSet.Input.POTASSIUM.ordinal()] = soilData.getPotassium();
+        inputs[RuleSet.Input.ORGANIC_MATTER.ordinal()] = soilData.getOrganicMatter();
+        inputs[RuleSet.Input.MOISTURE.ordinal()] = soilData.getMoisture();
+        inputs[RuleSet.Input.SOIL_TYPE.ordinal()] = RuleSet.soilType(soilData.getSoilType());
+        inputs[RuleSet.Input.HEALTH_SCORE.ordinal()] = analysis.getHealthScore();
+        for (long fired = rules.evaluate(inputs); fired != 0; fired &= fired - 1) {
+            RuleSet.Action action = rules.getAction(Long.numberOfTrailingZeros(fired));
+            analysis.addRecommendation(recommendation(action.getName(), action.getAmount(), action.getFrequency(),
+                action.getBenefits(), action.getNotes(), FertilizerRecommendation.Priority.valueOf(action.getPriority())));
+        }
+
+        double score = analysis.getHealthScore();
+        analysis.setOverallAssessment(score >= 8.0
+            ? "Excellent soil health. Your soil is in optimal condition for plant growth."
+            : score >= 6.0 ? "Good soil health. Some minor improvements can be made for optimal plant growth."
+            : score >= 4.0 ? "Fair soil health. Several improvements are needed for better plant growth."
+            : "Poor soil health. Significant improvements are required for successful plant growth.");
+
+        if (soilData.getPh() < 6.0 || soilData.getPh() > 7.0) {
+            analysis.addImprovementArea("Soil pH needs adjustment");
+        }
+        if (soilData.getNitrogen() < 40.0) {
+            analysis.addImprovementArea("Nitrogen levels are low");
+        }
+        if (soilData.getPhosphorus() < 30.0) {
+            analysis.addImprovementArea("Phosphorus levels are low");
+        }
+        if (soilData.getPotassium() < 40.0) {
+            analysis.addImprovementArea("Potassium levels are low");
+        }
+        if (soilData.getOrganicMatter() < 3.0) {
+            analysis.addImprovementArea("Organic matter content needs improvement");
+        }
+        if (soilData.getMoisture() < 25.0) {
+            analysis.addImprovementArea("Soil moisture levels are low");
+        }
+
+        analysis.addNutrientScore("Iron", nutrientScore(soilData.getIron(), 4.0, 6.0));
+        analysis.addNutrientScore("Zinc", nutrientScore(soilData.getZinc(), 2.0, 4.0));
+        analysis.addNutrientScore("Copper", nutrientScore(soilData.getCopper(), 0.8, 1.2));
+        analysis.addNutrientScore("Manganese", nutrientScore(soilData.getManganese(), 3.0, 5.0));
+        if (soilData.getIron() < 4.0) {
+            analysis.addRecommendation(recommendation("Iron Chelate", "1-2 oz per 1000 sq ft",
+                "Every 4-6 weeks during growing season", "Corrects iron deficiency",
+                "Apply as foliar spray for quick results", FertilizerRecommendation.Priority.MEDIUM));
+        }
+        if (soilData.getZinc() < 2.0) {
+            analysis.addRecommendation(recommendation("Zinc Sulfate", "1-2 lbs per 1000 sq ft",
+                "Once per year", "Corrects zinc deficiency", "Best applied in early spring",
+                FertilizerRecommendation.Priority.MEDIUM));
+        }
+
+        CropCatalogue catalogue = CropCatalogue.getDefault();
+        int[] key = catalogue.getMatrix().quantize(soilData, new int[catalogue.getMatrix().keyLength()]);
+        for (int crop : catalogue.resolve(soilData.getCropType())) {
+            CropSuitability suitability = new CropSuitability();
+            suitability.setCropName(catalogue.getCrop(crop).getName());
+            suitability.setSuitabilityScore(catalogue.getMatrix().score(crop, key));
+            if (crop == catalogue.cropId("Corn")) {
+                suitability.getAdvantages().add("Good nitrogen levels for corn growth");
+                if (soilData.getPhosphorus() < 30.0) {
+                    suitability.getChallenges().add("Phosphorus levels may limit root development");
+                }
+                suitability.setRecommendedVariety("Select based on local climate");
+                suitability.setPlantingSeason("Spring");
+            } else if (crop == catalogue.cropId("Wheat")) {
+                suitability.getAdvantages().add("Suitable pH range for wheat");
+                if (soilData.getPotassium() < 40.0) {
+                    suitability.getChallenges().add("Potassium levels may affect grain quality");
+                }
+                suitability.setRecommendedVariety("Winter wheat varieties");
+                suitability.setPlantingSeason("Fall");
+            }
+            analysis.addCropSuitability(suitability);
+        }
+
+        if (soilData.getNitrogen() > 80.0) {
+            EnvironmentalImpact impact = new EnvironmentalImpact();
+            impact.setImpactType("Nutrient Runoff");
+            impact.setDescription("High nitrogen levels may lead to water pollution");
+            impact.setSeverity("Moderate");
+            impact.getMitigationStrategies().add("Implement controlled-release fertilizers");
+            impact.getMitigationStrategies().add("Use cover crops to reduce nutrient leaching");
+            impact.setLongTermEffect("Reduced water quality if not managed");
+            analysis.addEnvironmentalImpact(impact);
+        }
+        if (soilData.getOrganicMatter() < 3.0) {
+            EnvironmentalImpact impact = new EnvironmentalImpact();
+            impact.setImpactType("Soil Erosion");
+            impact.setDescription("Low organic matter may increase soil erosion risk");
+            impact.setSeverity("High");
+            impact.getMitigationStrategies().add("Add organic matter through composting");
+            impact.getMitigationStrategies().add("Implement conservation tillage");
+            impact.setLongTermEffect("Improved soil structure and reduced erosion");
+            analysis.addEnvironmentalImpact(impact);
+        }
+
+        analysis.setSeasonalRecommendations(oldSeasonalRecommendations(soilData));
+        return analysis;
+    }
+
+    // SoilAnalyzerService.generateSeasonalRecommendations before the shared maps
+    static Map<String, String> oldSeasonalRecommendations(SoilData soilData) {
+        Map<String, String> recommendations = new HashMap<>();
+        recommendations.put("SPRING", "Prepare soil for planting. Apply balanced fertilizer and test soil temperature.");
+        recommendations.put("SUMMER", "Monitor soil moisture and apply mulch to conserve water.");
+        recommendations.put("AUTUMN", "Add organic matter and prepare soil for winter.");
+        recommendations.put("WINTER", "Protect soil from erosion and plan for spring planting.");
+        if (soilData.getSeason() != null) {
+            switch (Season.valueOf(soilData.getSeason())) {
+                case SPRING:
+                    if (soilData.getTemperature() < 15.0) {
+                        recommendations.put("CURRENT_SEASON",
+                            "Wait for soil to warm up before planting. Consider using row covers.");
+                    }
+                    break;
+                case SUMMER:
+                    if (soilData.getMoisture() < 25.0) {
+                        recommendations.put("CURRENT_SEASON",
+                            "Implement irrigation schedule to maintain soil moisture.");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return recommendations;
+    }
+
+    private static FertilizerRecommendation recommendation(String name, String amount, String frequency,
+                                                           String benefits, String notes,
+                                                           FertilizerRecommendation.Priority priority) {
+        FertilizerRecommendation recommendation = new FertilizerRecommendation();
+        recommendation.setName(name);
+        recommendation.setAmount(amount);
+        recommendation.setFrequency(frequency);
+        recommendation.setBenefits(benefits);
+        recommendation.setNotes(notes);
+        recommendation.setPriority(priority);
+        return recommendation;
+    }
+
+    private static double nutrientScore(double value, double min, double max) {
+        if (value >= min && value <= max) {
+            return 10.0;
+        } else if (value >= min * 0.7 && value <= max * 1.3) {
+            return 7.0;
+        } else if (value >= min * 0.5 && value <= max * 1.5) {
+            return 4.0;
+        } else {
+            return 1.0;
+        }
+    }
+}
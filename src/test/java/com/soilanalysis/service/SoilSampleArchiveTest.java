@@ -0,0 +1,159 @@
+package com.soilanalysis.service;
+
+import com.soilanalysis.model.SoilData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoilSampleArchiveTest {
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2030, 1, 1);
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("soil-archive-test");
+        file = dir.resolve("samples.archive");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void recordsReadBackAsWritten() throws IOException {
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            SoilData written = sample("North Field", LocalDateTime.of(2025, 3, 2, 9, 30), 6.4);
+            written.setSoilType(SoilData.SoilType.LOAMY);
+            written.setTemperature(18.5);
+            written.setClayPercentage(22.0);
+            assertEquals(0, archive.append(written));
+            archive.append(sample(null, LocalDateTime.of(2025, 3, 3, 0, 0), 7.0));
+
+            // Without a location a sample is stored but in no index
+            assertEquals(2, archive.size());
+            assertEquals(List.of("North Field"), archive.getLocations());
+            List<SoilData> read = new ArrayList<>();
+            archive.forEach("North Field", FROM, TO, view -> read.add(view.toSoilData()));
+            assertEquals(1, read.size());
+            SoilData copy = read.get(0);
+            assertEquals(written.getAnalysisDate(), copy.getAnalysisDate());
+            assertEquals("North Field", copy.getLocation());
+            assertEquals(SoilData.SoilType.LOAMY, copy.getSoilType());
+            assertEquals(6.4, copy.getPh(), 0.0);
+            assertEquals(written.getNitrogen(), copy.getNitrogen(), 0.0);
+            assertEquals(written.getManganese(), copy.getManganese(), 0.0);
+            assertEquals(18.5, copy.getTemperature(), 0.0);
+            assertEquals(22.0, copy.getClayPercentage(), 0.0);
+        }
+    }
+
+    @Test
+    public void reopeningRebuildsTheIndex() throws IOException {
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            archive.append(sample("North Field", LocalDateTime.of(2025, 3, 2, 9, 0), 6.0));
+            archive.append(sample("Orchard", LocalDateTime.of(2025, 3, 5, 9, 0), 5.5));
+            archive.append(sample("North Field", LocalDateTime.of(2025, 4, 1, 9, 0), 7.0));
+        }
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            assertEquals(3, archive.size());
+            assertEquals(List.of("North Field", "Orchard"), archive.getLocations());
+            assertEquals(2, archive.count("North Field", FROM, TO));
+            assertEquals(6.5, archive.average("North Field", SoilSampleArchive.Field.PH, FROM, TO), 1e-12);
+
+            // Rows and location ids carry on from where the file left off
+            assertEquals(3, archive.append(sample("Orchard", LocalDateTime.of(2025, 3, 6, 9, 0), 6.5)));
+            archive.append(sample("Greenhouse", LocalDateTime.of(2025, 3, 6, 9, 0), 6.8));
+        }
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            assertEquals(5, archive.size());
+            assertEquals(List.of("North Field", "Orchard", "Greenhouse"), archive.getLocations());
+            assertEquals(6.0, archive.average("Orchard", SoilSampleArchive.Field.PH, FROM, TO), 1e-12);
+            assertEquals(1, archive.count("Greenhouse", FROM, TO));
+        }
+    }
+
+    @Test
+    public void outOfOrderAppendsAreVisitedOldestFirst() throws IOException {
+        int[] days = {14, 3, 27, 3, 9, 1, 30, 20};
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            for (int day : days) {
+                archive.append(sample("North Field", LocalDateTime.of(2025, 6, day, 12, 0), day));
+            }
+            List<Double> visited = new ArrayList<>();
+            archive.forEach("North Field", LocalDate.of(2025, 6, 3), LocalDate.of(2025, 6, 20),
+                view -> visited.add(view.getPh()));
+            // Both ends of the range are whole days, and the two samples on the 3rd stay in append order
+            assertEquals(List.of(3.0, 3.0, 9.0, 14.0, 20.0), visited);
+            List<Long> rows = new ArrayList<>();
+            archive.forEach("North Field", LocalDate.of(2025, 6, 3), LocalDate.of(2025, 6, 3),
+                view -> rows.add(view.getRow()));
+            assertEquals(List.of(1L, 3L), rows);
+        }
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            assertEquals(5, archive.count("North Field", LocalDate.of(2025, 6, 3), LocalDate.of(2025, 6, 20)));
+            assertEquals(0, archive.count("North Field", LocalDate.of(2025, 7, 1), TO));
+        }
+    }
+
+    @Test
+    public void onlyFlushedRecordsAreCountedOnDisk() throws IOException {
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            archive.append(sample("North Field", LocalDateTime.of(2025, 3, 2, 9, 0), 6.0));
+            archive.append(sample("North Field", LocalDateTime.of(2025, 3, 3, 9, 0), 6.2));
+            archive.flush();
+            archive.append(sample("North Field", LocalDateTime.of(2025, 3, 4, 9, 0), 6.4));
+            assertEquals(3, archive.size());
+
+            // Another reader of the file sees the committed count, not the pending append
+            try (SoilSampleArchive other = new SoilSampleArchive(file)) {
+                assertEquals(2, other.size());
+                assertEquals(2, other.count("North Field", FROM, TO));
+            }
+        }
+        try (SoilSampleArchive archive = new SoilSampleArchive(file)) {
+            assertEquals(3, archive.size());
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[128]);
+        try {
+            new SoilSampleArchive(file).close();
+            throw new AssertionError("Opened a file that is not an archive");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Not a soil sample archive"));
+        }
+    }
+
+    private static SoilData sample(String location, LocalDateTime date, double ph) {
+        SoilData data = new SoilData();
+        data.setLocation(location);
+        data.setAnalysisDate(date);
+        data.setPh(ph);
+        data.setNitrogen(ph * 6);
+        data.setManganese(ph / 2);
+        return data;
+    }
+}
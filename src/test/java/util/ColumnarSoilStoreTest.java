@@ -0,0 +1,118 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarSoilStoreTest {
+    private static final int READERS = 4;
+
+    @Test
+    public void dailyAveragesStayInRangeWhileRowsMoveAndDisappear() throws Exception {
+        ColumnarSoilStore store = new ColumnarSoilStore();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Every row's pH is its day, so each day's average must be the day itself
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        double[] averages = store.dailyAverages(ColumnarSoilStore.Column.PH, 40, 60);
+                        assertEquals(21, averages.length);
+                        for (int d = 0; d < averages.length; d++) {
+                            assertTrue(Double.isNaN(averages[d]) || averages[d] == 40 + d);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            readers[r].start();
+        }
+
+        // Rows are moved to new days, removed and added back, mostly out of date order
+        Random random = new Random(13);
+        for (int i = 0; i < 50_000 && failure.get() == null; i++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                store.remove(id);
+            } else {
+                int day = random.nextInt(100);
+                store.put(id, day, day);
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void rangesAreContiguousWhateverTheInsertOrder() {
+        ColumnarSoilStore store = new ColumnarSoilStore();
+        int[] days = {5, 1, 9, 3, 3, 7, 0, 9, 2};
+        for (int id = 0; id < days.length; id++) {
+            store.put(id, days[id], days[id] * 10);
+        }
+        assertArrayEquals(new double[] {10, 20, 30, 30, 50}, store.range(1, 5).values(ColumnarSoilStore.Column.PH), 0.0);
+        assertEquals(0, store.range(10, 20).size());
+        assertEquals(days.length, store.range(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+
+        // Moving a row to another day, then removing rows
+        store.put(0, 8, 80);
+        assertArrayEquals(new double[] {70, 80, 90, 90}, store.range(6, 9).values(ColumnarSoilStore.Column.PH), 0.0);
+        assertTrue(store.remove(2));
+        assertTrue(store.remove(7));
+        assertFalse(store.remove(7));
+        assertArrayEquals(new double[] {70, 80}, store.range(6, 9).values(ColumnarSoilStore.Column.PH), 0.0);
+        assertEquals(days.length - 2, store.size());
+
+        // Same day: updated where it is
+        store.put(3, 3, 33);
+        assertEquals(63.0, store.range(3, 3).sum(ColumnarSoilStore.Column.PH), 0.0);
+    }
+
+    @Test
+    public void dailyAveragesOfPerRowValues() {
+        ColumnarSoilStore store = new ColumnarSoilStore();
+        store.put(1, 10, 5.0);
+        store.put(2, 10, 8.0);
+        store.put(3, 12, 6.5);
+        ColumnarSoilStore.Range range = store.range(10, 12);
+
+        // Scores computed per row average per day, unlike a score of the averaged measurements
+        double[] scores = {0.6, 0.6, 1.0};
+        double[] daily = range.dailyAverages(scores, 10, 12);
+        assertEquals(0.6, daily[0], 1e-12);
+        assertTrue(Double.isNaN(daily[1]));
+        assertEquals(1.0, daily[2], 0.0);
+        assertEquals(6.5, range.dailyAverages(ColumnarSoilStore.Column.PH, 10, 12)[0], 0.0);
+    }
+
+    @Test
+    public void meanSkipsUnmeasuredValues() {
+        ColumnarSoilStore store = new ColumnarSoilStore();
+        store.put(1, 0, 6.0, 40.0);
+        store.put(2, 0, 8.0, Double.NaN);
+        store.put(3, 0, 7.0);
+        ColumnarSoilStore.Aggregate aggregate = store.aggregate(0, 0);
+        assertEquals(3, aggregate.getRows());
+        assertEquals(3, aggregate.getCount(ColumnarSoilStore.Column.PH));
+        assertEquals(1, aggregate.getCount(ColumnarSoilStore.Column.NITROGEN));
+        assertEquals(40.0, aggregate.getAverage(ColumnarSoilStore.Column.NITROGEN), 0.0);
+        assertEquals((6 + 40 + 8 + 7) / 4.0, aggregate.getMeanOf(ColumnarSoilStore.Column.PH,
+            ColumnarSoilStore.Column.NITROGEN), 1e-12);
+        assertEquals(0.0, store.aggregate(1, 5).getMeanOf(ColumnarSoilStore.Column.PH), 0.0);
+    }
+}
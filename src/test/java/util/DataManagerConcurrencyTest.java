@@ -0,0 +1,149 @@
+package util;
+
+import model.SoilAnalysis;
+import model.User;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Races many threads on the same registration keys and on id assignment
+public class DataManagerConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int KEYS = 500;
+
+    // Keys are unique per test run so the tests don't see each other's users, or the sample admin
+    private final String run = "stress-" + System.nanoTime() + "-";
+
+    @Test
+    public void sameUsernameAndEmailHaveExactlyOneWinner() throws Exception {
+        AtomicIntegerArray winners = new AtomicIntegerArray(KEYS);
+        List<List<Integer>> ids = race(thread -> {
+            List<Integer> won = new ArrayList<>();
+            for (int key = 0; key < KEYS; key++) {
+                User user = new User(0, run + "user-" + key, "secret", "Stress User", run + key + "@example.com", "USER");
+                if (DataManager.registerUser(user)) {
+                    winners.incrementAndGet(key);
+                    won.add(user.getId());
+                }
+            }
+            return won;
+        });
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals("Winners for key " + key, 1, winners.get(key));
+            assertNotNull(DataManager.authenticateUser(run + "user-" + key, "secret"));
+        }
+        assertUnique(ids, KEYS);
+    }
+
+    @Test
+    public void sharedEmailHasExactlyOneWinnerAndReleasesLosingUsernames() throws Exception {
+        AtomicIntegerArray winners = new AtomicIntegerArray(KEYS);
+        List<List<Integer>> ids = race(thread -> {
+            List<Integer> won = new ArrayList<>();
+            for (int key = 0; key < KEYS; key++) {
+                // Every thread has its own username but all of them want the same email
+                User user = new User(0, run + "user-" + key + "-" + thread, "secret", "Stress User",
+                    run + "shared-" + key + "@example.com", "USER");
+                if (DataManager.registerUser(user)) {
+                    winners.incrementAndGet(key);
+                    won.add(user.getId());
+                }
+            }
+            return won;
+        });
+
+        for (int key = 0; key < KEYS; key++) {
+            assertEquals("Winners for email " + key, 1, winners.get(key));
+        }
+        assertUnique(ids, KEYS);
+
+        // A username that lost on its email was released and can register with another address
+        for (int key = 0; key < KEYS; key++) {
+            for (int thread = 0; thread < THREADS; thread++) {
+                String username = run + "user-" + key + "-" + thread;
+                if (DataManager.authenticateUser(username, "secret") == null) {
+                    assertTrue(DataManager.registerUser(new User(0, username, "secret", "Stress User",
+                        run + "retry-" + key + "-" + thread + "@example.com", "USER")));
+                    break;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void registrationWithoutEmailSucceeds() {
+        assertTrue(DataManager.registerUser(new User(0, run + "no-email", "secret", "Stress User", null, "USER")));
+        assertNotNull(DataManager.authenticateUser(run + "no-email", "secret"));
+        assertNull(DataManager.authenticateUser(run + "no-email", "wrong"));
+    }
+
+    @Test
+    public void concurrentSavesGetUniqueAnalysisIds() throws Exception {
+        int perThread = 2_000;
+        List<List<Integer>> ids = race(thread -> {
+            List<Integer> assigned = new ArrayList<>(perThread);
+            for (int i = 0; i < perThread; i++) {
+                SoilAnalysis analysis = new SoilAnalysis(0, 1_000_000 + thread, "2024-01-" + (10 + i % 18),
+                    "Basic", "Stress", "Completed", 6.5, 45.0, 35.0, 180.0, 3.2, 25.0, "Field", "");
+                assertTrue(DataManager.saveSoilAnalysis(analysis));
+                assigned.add(analysis.getId());
+            }
+            return assigned;
+        });
+        assertUnique(ids, THREADS * perThread);
+    }
+
+    private interface Worker {
+        List<Integer> run(int thread) throws Exception;
+    }
+
+    // Starts every worker at once and returns what each produced
+    private static List<List<Integer>> race(Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                Callable<List<Integer>> task = () -> {
+                    start.await();
+                    return worker.run(thread);
+                };
+                futures.add(pool.submit(task));
+            }
+            start.countDown();
+            List<List<Integer>> results = new ArrayList<>();
+            for (Future<List<Integer>> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertUnique(List<List<Integer>> ids, int expected) {
+        Set<Integer> seen = new HashSet<>();
+        for (List<Integer> batch : ids) {
+            for (int id : batch) {
+                assertTrue("Duplicate id " + id, seen.add(id));
+            }
+        }
+        assertEquals(expected, seen.size());
+    }
+}
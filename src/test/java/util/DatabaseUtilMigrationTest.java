@@ -0,0 +1,150 @@
+package util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Upgrades a database from before versioning, with data in it, on a file of its own
+public class DatabaseUtilMigrationTest {
+    private File file;
+    private Connection conn;
+
+    @BeforeClass
+    public static void keepDatabaseUtilOffTheRealFile() {
+        // Calling DatabaseUtil.migrate loads the class, which opens the shared test database
+        TestDatabase.url();
+    }
+
+    @Before
+    public void createUnversionedDatabase() throws Exception {
+        file = File.createTempFile("soil-migration-test", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement stmt = conn.createStatement()) {
+            // The schema the application created before migrations existed
+            stmt.execute("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE NOT NULL, " +
+                "password TEXT NOT NULL, email TEXT UNIQUE NOT NULL, full_name TEXT NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE TABLE soil_analysis (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, " +
+                "date TEXT NOT NULL, type TEXT NOT NULL, description TEXT, status TEXT NOT NULL, ph REAL, nitrogen REAL, " +
+                "phosphorus REAL, potassium REAL, organic_matter REAL, moisture REAL, location TEXT, recommendations TEXT, " +
+                "FOREIGN KEY (user_id) REFERENCES users(id))");
+            stmt.execute("INSERT INTO soil_analysis (user_id, date, type, status, ph, nitrogen, phosphorus, potassium, " +
+                "organic_matter, moisture, location) VALUES " +
+                "(1, '2025-03-02', 'Standard', 'Pending', 6, 40, 30, 150, 3, 21, 'North Field'), " +
+                "(1, '2025-03-20', 'Standard', 'Completed', 7, 50, 35, 160, 4, 24, 'South Field'), " +
+                "(2, '2025-04-01', 'Detailed', 'Pending', 6.5, 45, 32, 155, 3.5, 22, 'Orchard')");
+        }
+    }
+
+    @After
+    public void deleteDatabase() throws SQLException {
+        conn.close();
+        file.delete();
+    }
+
+    @Test
+    public void upgradesExistingDataInPlace() throws SQLException {
+        DatabaseUtil.migrate(conn);
+
+        assertEquals(DatabaseUtil.SCHEMA_VERSION, userVersion());
+        assertEquals(List.of("user_id", "date", "id", "ph", "nitrogen", "phosphorus", "potassium",
+            "organic_matter", "moisture"), indexColumns("idx_soil_analysis_user_date"));
+        assertEquals(List.of("user_id", "status"), indexColumns("idx_soil_analysis_user_status"));
+
+        // Rows that were already there are searchable and counted in the monthly rollup
+        assertEquals(1, count("SELECT COUNT(*) FROM soil_analysis_fts WHERE soil_analysis_fts MATCH 'orch*'"));
+        assertEquals(List.of("1 2025-03 2 1 44.2", "2 2025-04 1 1 44.0"), monthlyStats());
+    }
+
+    @Test
+    public void rollupFollowsLaterWrites() throws SQLException {
+        DatabaseUtil.migrate(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE soil_analysis SET status = 'Completed' WHERE location = 'North Field'");
+            stmt.execute("DELETE FROM soil_analysis WHERE location = 'Orchard'");
+        }
+        assertEquals(List.of("1 2025-03 2 0 44.2"), monthlyStats());
+        assertEquals(0, count("SELECT COUNT(*) FROM soil_analysis_fts WHERE soil_analysis_fts MATCH 'orch*'"));
+    }
+
+    @Test
+    public void migratingAgainChangesNothing() throws SQLException {
+        DatabaseUtil.migrate(conn);
+        List<String> stats = monthlyStats();
+        DatabaseUtil.migrate(conn);
+        assertEquals(DatabaseUtil.SCHEMA_VERSION, userVersion());
+        assertEquals(stats, monthlyStats());
+        assertEquals(3, count("SELECT COUNT(*) FROM soil_analysis_fts"));
+    }
+
+    @Test
+    public void failedStepRollsBackItsVersion() throws SQLException {
+        DatabaseUtil.migrate(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = 1");
+            // Version 2 creates this name as an index; a table in the way makes the step fail
+            stmt.execute("DROP INDEX idx_soil_analysis_user_status");
+            stmt.execute("CREATE TABLE idx_soil_analysis_user_status (x)");
+        }
+        try {
+            DatabaseUtil.migrate(conn);
+            throw new AssertionError("Migration over a conflicting table succeeded");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version 2"));
+        }
+        assertEquals(1, userVersion());
+    }
+
+    private int userVersion() throws SQLException {
+        return count("PRAGMA user_version");
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private List<String> indexColumns(String index) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM pragma_index_info(?) ORDER BY seqno")) {
+            pstmt.setString(1, index);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+
+    // "user month analyses pending average-health" per rollup row
+    private List<String> monthlyStats() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT user_id, month, analysis_count, pending_count, " +
+                 "health_sum / health_count FROM user_monthly_stats ORDER BY user_id, month")) {
+            while (rs.next()) {
+                rows.add(rs.getInt(1) + " " + rs.getString(2) + " " + rs.getInt(3) + " " + rs.getInt(4) + " "
+                    + Math.round(rs.getDouble(5) * 10) / 10.0);
+            }
+        }
+        return rows;
+    }
+}
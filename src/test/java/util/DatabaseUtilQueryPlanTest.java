@@ -0,0 +1,75 @@
+package util;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// The dashboard must be served from indexes and user_monthly_stats, never by scanning soil_analysis
+public class DatabaseUtilQueryPlanTest {
+    private static File database;
+    private static String url;
+
+    @BeforeClass
+    public static void migrateTemporaryDatabase() throws Exception {
+        url = TestDatabase.url();
+        database = TestDatabase.file();
+        // Loading DatabaseUtil runs every schema migration against the temporary file. Its pool
+        // is shared by every test class in this JVM, so it is left open for the ones after us
+        DatabaseUtil.getPoolMetrics();
+    }
+
+    @Test
+    public void recentAnalysesSeekTheUserDateIndex() throws SQLException {
+        assertNoTableScan(DatabaseUtil.FIRST_PAGE_QUERY);
+        assertNoTableScan(DatabaseUtil.NEXT_PAGE_QUERY);
+    }
+
+    // getAnalysisCount, getActiveRecommendationsCount and getAverageSoilHealth all run this query
+    @Test
+    public void dashboardCardsReadMonthlyStatsOnly() throws SQLException {
+        List<String> plan = queryPlan(DatabaseUtil.DASHBOARD_STATS_QUERY);
+        assertNoTableScan(DatabaseUtil.DASHBOARD_STATS_QUERY);
+        for (String step : plan) {
+            assertFalse("Dashboard stats read soil_analysis: " + plan, step.contains("soil_analysis"));
+        }
+    }
+
+    // Guards the check itself: an unindexed filter must show up as a scan
+    @Test
+    public void unindexedFilterIsReportedAsScan() throws SQLException {
+        List<String> plan = queryPlan("SELECT * FROM soil_analysis WHERE status = ?");
+        assertTrue("Expected a scan in " + plan, plan.stream().anyMatch(step -> step.startsWith("SCAN soil_analysis")));
+    }
+
+    private static void assertNoTableScan(String sql) throws SQLException {
+        List<String> plan = queryPlan(sql);
+        assertFalse("No query plan for " + sql, plan.isEmpty());
+        for (String step : plan) {
+            assertFalse("Full scan in " + plan + " for " + sql, step.startsWith("SCAN soil_analysis"));
+        }
+    }
+
+    private static List<String> queryPlan(String sql) throws SQLException {
+        assertTrue("Migrated database missing", database.isFile());
+        List<String> plan = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,32 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * One temporary database per test JVM. DatabaseUtil reads soil.db.url once,
+ * when the class loads, so every test that touches it must go through here
+ * first; otherwise it would migrate and write the real database file.
+ */
+final class TestDatabase {
+    private static final File FILE = create();
+
+    private TestDatabase() {
+    }
+
+    static File file() { return FILE; }
+
+    static String url() { return "jdbc:sqlite:" + FILE.getAbsolutePath(); }
+
+    private static File create() {
+        try {
+            File file = File.createTempFile("soil-analysis-test", ".db");
+            file.deleteOnExit();
+            System.setProperty("soil.db.url", "jdbc:sqlite:" + file.getAbsolutePath());
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}